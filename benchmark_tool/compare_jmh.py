@@ -0,0 +1,82 @@
+"""Compare two JMH JSON result files and fail on regressions.
+
+Usage:
+    python3 benchmark_tool/compare_jmh.py baseline.json current.json [--max-regression 10]
+
+Exits with status 1 if any benchmark present in both files got slower by more than
+--max-regression percent.
+"""
+import argparse
+import json
+import sys
+
+# Modes where a lower score is better; throughput is the other way round
+LOWER_IS_BETTER = {"avgt", "sample", "ss"}
+
+
+def load(path):
+    with open(path, "r", encoding="utf-8") as f:
+        results = json.load(f)
+
+    scores = {}
+    for result in results:
+        params = result.get("params") or {}
+        key = result["benchmark"]
+        if params:
+            key += " [" + ", ".join(f"{name}={value}" for name, value in sorted(params.items())) + "]"
+        metric = result["primaryMetric"]
+        scores[key] = (result["mode"], metric["score"], metric.get("scoreError"), metric["scoreUnit"])
+    return scores
+
+
+def change_percent(mode, baseline, current):
+    """Slowdown in percent, negative for an improvement."""
+    if baseline == 0:
+        return 0.0
+    if mode in LOWER_IS_BETTER:
+        return (current - baseline) / baseline * 100
+    return (baseline - current) / baseline * 100
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Compare two JMH JSON result files")
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--max-regression", type=float, default=10.0,
+                        help="Allowed slowdown in percent (default: 10)")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+
+    regressions = []
+    width = max((len(key) for key in current), default=0)
+    for key in sorted(current):
+        mode, score, error, unit = current[key]
+        if key not in baseline:
+            print(f"{key:<{width}}  {score:12.3f} {unit:<8}  (new)")
+            continue
+        base_mode, base_score, _, _ = baseline[key]
+        if base_mode != mode:
+            print(f"{key:<{width}}  mode changed from {base_mode} to {mode}, skipped")
+            continue
+
+        change = change_percent(mode, base_score, score)
+        flag = ""
+        if change > args.max_regression:
+            flag = "  REGRESSION"
+            regressions.append(key)
+        print(f"{key:<{width}}  {base_score:12.3f} -> {score:12.3f} {unit:<8}  {change:+7.1f}%{flag}")
+
+    for key in sorted(set(baseline) - set(current)):
+        print(f"{key:<{width}}  (missing from current results)")
+
+    print()
+    if regressions:
+        print(f"{len(regressions)} benchmark(s) regressed by more than {args.max_regression}%")
+        sys.exit(1)
+    print(f"No regressions above {args.max_regression}%")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,114 @@
+package org.example.benchmarks;
+
+import org.example.commands.CsvCutCommand;
+import org.example.commands.CsvGrepCommand;
+import org.example.commands.CsvLookCommand;
+import org.example.commands.CsvSortCommand;
+import org.example.commands.CsvStackCommand;
+import org.example.commands.CsvStatCommand;
+import org.openjdk.jmh.annotations.*;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs the CSV subcommands in-process on generated files, see {@link CsvData} for the shapes.
+ * Output goes to a temporary file through {@code --output}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBenchmark {
+
+    @Param({"narrow", "wide"})
+    private String width;
+
+    @Param({"numeric", "text"})
+    private String content;
+
+    @Param({"plain", "quoted"})
+    private String quoting;
+
+    @Param({"100000"})
+    private int rows;
+
+    private Path dir;
+    private String input;
+    private String secondInput;
+    private String output;
+    private String columns;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("csvmultitool-bench-");
+        Path first = dir.resolve("input.csv");
+        Path second = dir.resolve("second.csv");
+        CsvData.write(first, width, content, quoting, rows, 1);
+        CsvData.write(second, width, content, quoting, rows, 2);
+
+        input = first.toString();
+        secondInput = second.toString();
+        output = dir.resolve("output").toString();
+        // A third of the columns, spread over the row
+        int count = CsvData.columnCount(width);
+        StringBuilder selected = new StringBuilder("1");
+        for (int column = 4; column <= count; column += 3) {
+            selected.append(',').append(column);
+        }
+        columns = selected.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int csvcut() {
+        return run(new CsvCutCommand(), "-c", columns, "-o", output, input);
+    }
+
+    @Benchmark
+    public int csvgrep() {
+        // About a tenth of the rows match
+        return run(new CsvGrepCommand(), "-c", "id", "-r", "7$", "-o", output, input);
+    }
+
+    @Benchmark
+    public int csvsort() {
+        return run(new CsvSortCommand(), "-c", "2", "-o", output, input);
+    }
+
+    @Benchmark
+    public int csvstat() {
+        return run(new CsvStatCommand(), "-o", output, input);
+    }
+
+    @Benchmark
+    public int csvstack() {
+        return run(new CsvStackCommand(), "-o", output, input, secondInput);
+    }
+
+    @Benchmark
+    public int csvlook() {
+        return run(new CsvLookCommand(), "-o", output, input);
+    }
+
+    static int run(Object command, String... args) {
+        int exitCode = new CommandLine(command).execute(args);
+        if (exitCode != 0) {
+            throw new IllegalStateException("Command failed with exit code " + exitCode + ": " + String.join(" ", args));
+        }
+        return exitCode;
+    }
+}
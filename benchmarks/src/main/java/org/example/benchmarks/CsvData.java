@@ -0,0 +1,140 @@
+package org.example.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes deterministic synthetic CSV files.
+ *
+ * The first column is a row id, the others are numbers or text:
+ * <ul>
+ *   <li>width {@code narrow} has 6 columns, {@code wide} has 40</li>
+ *   <li>content {@code numeric} makes 4 of 5 columns integers or decimals, {@code text} makes 4 of 5 columns words</li>
+ *   <li>quoting {@code plain} writes values that never need quotes, {@code quoted} quotes every value and puts
+ *       delimiters, quotes and line breaks into some of the text</li>
+ * </ul>
+ */
+final class CsvData {
+
+    private static final String[] WORDS = {
+            "alpha", "beta", "gamma", "delta", "Praha", "Brno", "Plzeň", "Zürich", "Ostrava", "Olomouc",
+            "red", "green", "blue", "active", "inactive", "pending", "NYC", "LA", "Košice", "Liberec"
+    };
+
+    private CsvData() {
+    }
+
+    static int columnCount(String width) {
+        switch (width) {
+            case "narrow":
+                return 6;
+            case "wide":
+                return 40;
+            default:
+                throw new IllegalArgumentException("Unknown width: " + width);
+        }
+    }
+
+    static void write(Path file, String width, String content, String quoting, int rows, long seed) throws IOException {
+        int columns = columnCount(width);
+        boolean numeric = parseContent(content);
+        boolean quoted = parseQuoting(quoting);
+        Random random = new Random(seed);
+
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("id");
+            for (int column = 2; column <= columns; column++) {
+                out.write(",c");
+                out.write(Integer.toString(column));
+            }
+            out.write("\r\n");
+
+            StringBuilder value = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                writeValue(out, Integer.toString(row), quoted);
+                for (int column = 1; column < columns; column++) {
+                    value.setLength(0);
+                    // Every fifth column has the minority type
+                    if (numeric == (column % 5 != 0)) {
+                        appendNumber(value, random, column);
+                    } else {
+                        appendText(value, random, quoted);
+                    }
+                    out.write(',');
+                    writeValue(out, value, quoted);
+                }
+                out.write("\r\n");
+            }
+        }
+    }
+
+    private static boolean parseContent(String content) {
+        switch (content) {
+            case "numeric":
+                return true;
+            case "text":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown content: " + content);
+        }
+    }
+
+    private static boolean parseQuoting(String quoting) {
+        switch (quoting) {
+            case "plain":
+                return false;
+            case "quoted":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown quoting: " + quoting);
+        }
+    }
+
+    private static void appendNumber(StringBuilder value, Random random, int column) {
+        if (column % 2 == 0) {
+            value.append(random.nextInt(100_000));
+        } else {
+            value.append(random.nextInt(10_000)).append('.').append(random.nextInt(90) + 10);
+        }
+    }
+
+    private static void appendText(StringBuilder value, Random random, boolean quoted) {
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                value.append(' ');
+            }
+            value.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (quoted) {
+            int special = random.nextInt(100);
+            if (special < 5) {
+                value.append(", ").append(WORDS[random.nextInt(WORDS.length)]);
+            } else if (special < 7) {
+                value.append(" 5\" wide");
+            } else if (special < 8) {
+                value.append("\nsecond line");
+            }
+        }
+    }
+
+    private static void writeValue(Writer out, CharSequence value, boolean quoted) throws IOException {
+        if (!quoted) {
+            out.append(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
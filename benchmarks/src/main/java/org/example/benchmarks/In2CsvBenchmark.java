@@ -0,0 +1,116 @@
+package org.example.benchmarks;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.example.commands.In2CsvCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs in2csv in-process on a generated workbook with number, text and date cells.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class In2CsvBenchmark {
+
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "Praha", "Brno", "Plzeň", "Zürich", "NYC"};
+
+    @Param({"xls", "xlsx"})
+    private String format;
+
+    // At most 65535 for xls
+    @Param({"50000"})
+    private int rows;
+
+    @Param({"3"})
+    private int sheets;
+
+    private Path dir;
+    private String input;
+    private String output;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("csvmultitool-bench-");
+        Path file = dir.resolve("input." + format);
+        input = file.toString();
+        output = dir.resolve("output").toString();
+
+        try (Workbook workbook = createWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            Random random = new Random(1);
+            long day = TimeUnit.DAYS.toMillis(1);
+
+            for (int s = 1; s <= sheets; s++) {
+                Sheet sheet = workbook.createSheet("Sheet" + s);
+                Row header = sheet.createRow(0);
+                String[] names = {"id", "name", "city", "amount", "count", "date"};
+                for (int c = 0; c < names.length; c++) {
+                    header.createCell(c).setCellValue(names[c]);
+                }
+                for (int r = 1; r <= rows; r++) {
+                    Row row = sheet.createRow(r);
+                    row.createCell(0).setCellValue(r);
+                    row.createCell(1).setCellValue(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1000));
+                    row.createCell(2).setCellValue(WORDS[random.nextInt(WORDS.length)]);
+                    row.createCell(3).setCellValue(random.nextInt(1_000_000) / 100.0);
+                    row.createCell(4).setCellValue(random.nextInt(100));
+                    Cell date = row.createCell(5);
+                    date.setCellValue(new Date(random.nextInt(20 * 365) * day));
+                    date.setCellStyle(dateStyle);
+                }
+            }
+            workbook.write(out);
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+        }
+    }
+
+    private Workbook createWorkbook() {
+        switch (format) {
+            case "xls":
+                return new HSSFWorkbook();
+            case "xlsx":
+                return new SXSSFWorkbook(1000);
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int convert() {
+        return CommandBenchmark.run(new In2CsvCommand(), "-o", output, input);
+    }
+
+    @Benchmark
+    public int names() {
+        return CommandBenchmark.run(new In2CsvCommand(), "-n", "-o", output, input);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.benchmarks;
+
+import org.example.io.CsvInput;
+import org.example.io.StreamCsvReader;
+import org.example.io.MappedCsvReader;
+import org.example.io.RecordReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two {@link RecordReader} implementations on the files of {@link CommandBenchmark},
+ * touching either one field per record (as csvgrep does) or every field (as csvstat does).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordReaderBenchmark {
+
+    @Param({"mapped", "stream"})
+    private String reader;
+
+    @Param({"narrow", "wide"})
+    private String width;
+
+    @Param({"numeric", "text"})
+    private String content;
+
+    @Param({"plain", "quoted"})
+    private String quoting;
+
+    @Param({"100000"})
+    private int rows;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        Path path = Files.createTempFile("csvmultitool-bench-", ".csv");
+        CsvData.write(path, width, content, quoting, rows, 1);
+        file = path.toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void oneField(Blackhole blackhole) throws IOException {
+        try (RecordReader records = open()) {
+            while (records.next()) {
+                blackhole.consume(records.get(0));
+            }
+        }
+    }
+
+    @Benchmark
+    public void allFields(Blackhole blackhole) throws IOException {
+        try (RecordReader records = open()) {
+            while (records.next()) {
+                for (int i = 0; i < records.size(); i++) {
+                    blackhole.consume(records.get(i));
+                }
+            }
+        }
+    }
+
+    private RecordReader open() throws IOException {
+        switch (reader) {
+            case "mapped":
+                return new MappedCsvReader(file);
+            case "stream":
+                return new StreamCsvReader(CsvInput.open(file, StandardCharsets.UTF_8, 256 * 1024), true);
+            default:
+                throw new IllegalArgumentException("Unknown reader: " + reader);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.commands;
+
+import org.example.io.RecordReader;
+import org.example.io.RecordWriter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of output columns resolved to field positions once, so rows can be written
+ * field by field without name lookups or a temporary list per row.
+ */
+final class ColumnProjection {
+
+    private final String[] names;
+    private final int[] indexes;
+    private final int maxIndex;
+
+    private ColumnProjection(String[] names, int[] indexes) {
+        this.names = names;
+        this.indexes = indexes;
+        this.maxIndex = Arrays.stream(indexes).max().orElse(-1);
+    }
+
+    /**
+     * Resolves column names through the reader's header map.
+     */
+    static ColumnProjection of(List<String> columns, Map<String, Integer> headerMap) {
+        String[] names = columns.toArray(new String[0]);
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = headerMap.get(names[i]);
+        }
+        return new ColumnProjection(names, indexes);
+    }
+
+    int size() {
+        return indexes.length;
+    }
+
+    String getName(int column) {
+        return names[column];
+    }
+
+    int getIndex(int column) {
+        return indexes[column];
+    }
+
+    /**
+     * Value of the given output column of the current record, failing on short records.
+     */
+    String get(RecordReader record, int column) {
+        return CsvRecords.get(record, indexes[column], names[column]);
+    }
+
+    /**
+     * Copies the projected values into {@code row}, which is reused by the caller.
+     */
+    void read(RecordReader record, String[] row) {
+        for (int i = 0; i < indexes.length; i++) {
+            row[i] = CsvRecords.get(record, indexes[i], names[i]);
+        }
+    }
+
+    /**
+     * Writes the projected values of the current record as one output record; other fields
+     * are not decoded. A short record fails before any of its fields is written.
+     */
+    void print(RecordReader record, RecordWriter writer) {
+        if (record.size() <= maxIndex) {
+            // Fails at the first missing column
+            for (int i = 0; i < indexes.length; i++) {
+                CsvRecords.get(record, indexes[i], names[i]);
+            }
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            writer.writeField(CsvRecords.get(record, indexes[i], names[i]));
+        }
+        writer.endRecord();
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.commands;
+
+import org.example.io.ColumnCache;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+
+@Command(name = "csvcache", description = {
+        "Write a column cache next to a CSV file (data.csv.colcache).",
+        "Commands reading the file use the cache instead of parsing it while the file is unchanged."})
+public class CsvCacheCommand implements Callable<Integer> {
+
+    @Parameters(index = "0", description = "CSV file to cache")
+    private File inputFile;
+
+    @Option(names = {"--delete"}, description = "Delete the column cache of the file")
+    private boolean delete;
+
+    @Mixin
+    private IoOptions io;
+
+    @Override
+    public Integer call() throws Exception {
+        try {
+            if (delete) {
+                Files.deleteIfExists(ColumnCache.sidecar(inputFile).toPath());
+                return 0;
+            }
+            if (!inputFile.isFile()) {
+                System.err.println("Error: File not found: " + inputFile);
+                return 1;
+            }
+            // Parsed even if a cache exists, it may be for another encoding
+            ColumnCache.write(inputFile, io.getCharset(), () -> io.parseRecords(inputFile.getPath()));
+            return 0;
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+}
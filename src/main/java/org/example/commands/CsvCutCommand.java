@@ -1,7 +1,9 @@
 package org.example.commands;
 
-import org.apache.commons.csv.*;
+import org.example.io.RecordReader;
+import org.example.io.RecordWriter;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
@@ -10,7 +12,7 @@ import java.util.*;
 import java.util.concurrent.Callable;
 
 @Command(name = "csvcut", description = "Select or reorder columns from CSV files")
-public class CsvCutCommand implements Callable<Integer> {
+public class CsvCutCommand implements Callable<Integer>, ScanStep {
 
     @Parameters(index = "0", description = "CSV file to process (use '-' for stdin)", arity = "0..1")
     private String inputFile = "-";
@@ -24,19 +26,23 @@ public class CsvCutCommand implements Callable<Integer> {
     @Option(names = {"-C", "--not-columns"}, description = "Columns to exclude", split = ",")
     private String[] notColumns;
 
+    @Mixin
+    private IoOptions io;
+
     @Override
     public Integer call() throws Exception {
-        try (Reader reader = getReader();
-             CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+        try (RecordReader records = io.openRecords(inputFile)) {
 
-            Map<String, Integer> headerMap = parser.getHeaderMap();
+            Map<String, Integer> headerMap = records.getHeaderMap();
             List<String> headers = new ArrayList<>(headerMap.keySet());
 
             if (displayNames) {
-                int index = 1;
-                for (String header : headers) {
-                    System.out.println("  " + index + ": " + header);
-                    index++;
+                try (Writer out = io.openOutput()) {
+                    int index = 1;
+                    for (String header : headers) {
+                        out.write("  " + index + ": " + header + System.lineSeparator());
+                        index++;
+                    }
                 }
                 return 0;
             }
@@ -48,20 +54,16 @@ public class CsvCutCommand implements Callable<Integer> {
                 return 1;
             }
 
-            try (CSVPrinter printer = new CSVPrinter(System.out, CSVFormat.DEFAULT)) {
+            ColumnProjection projection = ColumnProjection.of(selectedColumns, headerMap);
+
+            try (RecordWriter out = io.openRecordOutput()) {
                 // Print header
-                printer.printRecord(selectedColumns);
+                out.writeRecord(selectedColumns);
 
                 // Print data rows
-                for (CSVRecord record : parser) {
-                    List<String> values = new ArrayList<>();
-                    for (String col : selectedColumns) {
-                        values.add(record.get(col));
-                    }
-                    printer.printRecord(values);
+                while (records.next()) {
+                    projection.print(records, out);
                 }
-
-                printer.flush();
             }
             return 0;
 
@@ -71,16 +73,23 @@ public class CsvCutCommand implements Callable<Integer> {
         }
     }
 
-    private Reader getReader() throws IOException {
-        if ("-".equals(inputFile)) {
-            return new InputStreamReader(System.in);
-        } else {
-            File file = new File(inputFile);
-            if (!file.exists()) {
-                throw new IOException("File not found: " + inputFile);
-            }
-            return new FileReader(file);
+    @Override
+    public boolean isScan() {
+        return !displayNames;
+    }
+
+    @Override
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    @Override
+    public void plan(ScanStage scan) {
+        List<String> selectedColumns = determineSelectedColumns(scan.getColumns());
+        if (selectedColumns.isEmpty()) {
+            throw new IllegalArgumentException("No columns selected");
         }
+        scan.select(selectedColumns);
     }
 
     private List<String> determineSelectedColumns(List<String> allHeaders) {
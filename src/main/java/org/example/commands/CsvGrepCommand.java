@@ -1,17 +1,26 @@
 package org.example.commands;
 
-import org.apache.commons.csv.*;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.example.io.CsvChunker;
+import org.example.io.CsvOutput;
+import org.example.io.CsvRecordWriter;
+import org.example.io.RecordReader;
+import org.example.io.RecordWriter;
+import org.example.match.ValueMatcher;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
 
 @Command(name = "csvgrep", description = "Filter CSV rows based on pattern matching")
-public class CsvGrepCommand implements Callable<Integer> {
+public class CsvGrepCommand implements Callable<Integer>, ScanStep {
+
+    // Matching rows of a chunk are buffered until the chunk is written out
+    private static final long CHUNK_BYTES = 8L * 1024 * 1024;
 
     @Parameters(index = "0", description = "CSV file to filter (use '-' for stdin)", arity = "0..1")
     private String inputFile = "-";
@@ -19,8 +28,14 @@ public class CsvGrepCommand implements Callable<Integer> {
     @Option(names = {"-c", "--column"}, description = "Column name or 1-based index to search", required = true)
     private String column;
 
-    @Option(names = {"-m", "--match"}, description = "Exact string to match")
-    private String matchString;
+    @Option(names = {"-m", "--match"}, description = "Exact string to match (repeatable, a row matches if any of them matches)")
+    private List<String> matchStrings;
+
+    @Option(names = {"-f", "--patterns-file"}, description = "File with one string to match per line, blank lines are ignored")
+    private File patternsFile;
+
+    @Option(names = {"-s", "--substring"}, description = "Match the strings anywhere in the value instead of the whole value")
+    private boolean substring;
 
     @Option(names = {"-r", "--regex"}, description = "Regular expression to match")
     private String regex;
@@ -28,18 +43,34 @@ public class CsvGrepCommand implements Callable<Integer> {
     @Option(names = {"-i", "--invert"}, description = "Invert match (select non-matching rows)")
     private boolean invert;
 
+    @Option(names = {"-j", "--threads"}, description = "Number of threads; a file is split at record boundaries and the parts are filtered in parallel (default: 1)")
+    private int threads = 1;
+
+    @Option(names = {"--unordered"}, description = "With --threads, write matching rows as soon as a part is done instead of in input order")
+    private boolean unordered;
+
+    @Mixin
+    private IoOptions io;
+
+    private ValueMatcher matcher;
+
     @Override
     public Integer call() throws Exception {
         try {
-            if (matchString == null && regex == null) {
-                System.err.println("Error: Either --match or --regex must be specified");
+            List<String> literals = readLiterals();
+            if (literals.isEmpty() && regex == null) {
+                System.err.println("Error: Either --match, --patterns-file or --regex must be specified");
+                return 1;
+            }
+            if (threads < 1) {
+                System.err.println("Error: Number of threads must be at least 1");
                 return 1;
             }
 
-            try (Reader reader = getReader();
-                 CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+            try (RecordReader records = io.openRecords(inputFile)) {
 
-                List<String> headers = new ArrayList<>(parser.getHeaderMap().keySet());
+                Map<String, Integer> headerMap = records.getHeaderMap();
+                List<String> headers = new ArrayList<>(headerMap.keySet());
                 String targetColumn = resolveColumn(headers);
 
                 if (targetColumn == null) {
@@ -47,38 +78,29 @@ public class CsvGrepCommand implements Callable<Integer> {
                     return 1;
                 }
 
-                Pattern pattern = null;
-                if (regex != null) {
-                    pattern = Pattern.compile(regex);
-                }
+                matcher = createMatcher(literals);
 
-                try (CSVPrinter printer = new CSVPrinter(System.out, CSVFormat.DEFAULT)) {
-                    printer.printRecord(headers);
+                // Resolve column names to field positions once
+                ColumnProjection output = ColumnProjection.of(headers, headerMap);
+                ColumnProjection target = ColumnProjection.of(List.of(targetColumn), headerMap);
 
-                    for (CSVRecord record : parser) {
-                        String value = record.get(targetColumn);
-                        boolean matches = false;
+                if (threads > 1 && !"-".equals(inputFile) && io.isChunkable() && !io.isCached(inputFile)) {
+                    grepParallel(headers, output, target);
+                    return 0;
+                }
 
-                        if (matchString != null) {
-                            matches = value.equals(matchString);
-                        } else if (pattern != null) {
-                            matches = pattern.matcher(value).find();
-                        }
+                try (RecordWriter out = io.openRecordOutput()) {
+                    out.writeRecord(headers);
 
-                        if (invert) {
-                            matches = !matches;
-                        }
-
-                        if (matches) {
-                            List<String> values = new ArrayList<>();
-                            for (String header : headers) {
-                                values.add(record.get(header));
-                            }
-                            printer.printRecord(values);
+                    // Only the target column is decoded for rows that do not match; a column
+                    // cache tests each distinct value of a dictionary column once
+                    boolean pushed = records.pushFilter(headerMap.get(targetColumn), this::matches);
+                    while (records.next()) {
+                        String value = target.get(records, 0);
+                        if (pushed || matches(value)) {
+                            output.print(records, out);
                         }
                     }
-
-                    printer.flush();
                 }
                 return 0;
             }
@@ -89,16 +111,124 @@ public class CsvGrepCommand implements Callable<Integer> {
         }
     }
 
-    private Reader getReader() throws IOException {
-        if ("-".equals(inputFile)) {
-            return new InputStreamReader(System.in);
+    private boolean matches(String value) {
+        return invert != matcher.matches(value);
+    }
+
+    private ValueMatcher createMatcher(List<String> literals) {
+        if (!literals.isEmpty()) {
+            return substring ? ValueMatcher.substring(literals) : ValueMatcher.exact(literals);
+        }
+        return ValueMatcher.regex(regex);
+    }
+
+    @Override
+    public boolean isScan() {
+        // Parallel parts are only read from files, so only the first stage could use them
+        return threads == 1;
+    }
+
+    @Override
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    @Override
+    public void plan(ScanStage scan) throws IOException {
+        List<String> literals = readLiterals();
+        if (literals.isEmpty() && regex == null) {
+            throw new IllegalArgumentException("Either --match, --patterns-file or --regex must be specified");
+        }
+        String targetColumn = resolveColumn(scan.getColumns());
+        if (targetColumn == null) {
+            throw new IllegalArgumentException("Column not found: " + column);
+        }
+        matcher = createMatcher(literals);
+        scan.filter(targetColumn, this::matches);
+    }
+
+    private List<String> readLiterals() throws IOException {
+        List<String> literals = new ArrayList<>();
+        if (matchStrings != null) {
+            literals.addAll(matchStrings);
+        }
+        if (patternsFile != null) {
+            try (BufferedReader reader = new BufferedReader(io.openInput(patternsFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        literals.add(line);
+                    }
+                }
+            }
+        }
+        return literals;
+    }
+
+    /**
+     * Splits the file at record boundaries and filters the parts on a thread pool. Each part's
+     * matching rows are rendered to a buffer and written in input order, or in completion
+     * order with --unordered. At most a few parts per thread are in flight.
+     */
+    private void grepParallel(List<String> headers, ColumnProjection output, ColumnProjection target) throws Exception {
+        File file = new File(inputFile);
+
+        int chunkCount = (int) Math.max(threads, file.length() / CHUNK_BYTES);
+        int maxInFlight = threads * 2;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (Writer out = io.openOutput()) {
+            // The parts arrive as rendered text, only the header goes through a CSV writer here
+            CsvWriter csv = CsvOutput.csv(out);
+            csv.writeRecord(headers);
+            csv.flush();
+
+            List<CsvChunker.Chunk> chunks = CsvChunker.split(file, chunkCount, pool);
+            // Only used with --unordered, otherwise finished parts are taken in submission order
+            CompletionService<StringWriter> completion = new ExecutorCompletionService<>(pool);
+            Deque<Future<StringWriter>> inFlight = new ArrayDeque<>();
+
+            for (CsvChunker.Chunk chunk : chunks) {
+                if (inFlight.size() == maxInFlight) {
+                    writeNext(out, completion, inFlight);
+                }
+                Callable<StringWriter> task = () -> grepChunk(file, chunk, output, target);
+                inFlight.add(unordered ? completion.submit(task) : pool.submit(task));
+            }
+            while (!inFlight.isEmpty()) {
+                writeNext(out, completion, inFlight);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void writeNext(Writer out, CompletionService<StringWriter> completion, Deque<Future<StringWriter>> inFlight) throws Exception {
+        Future<StringWriter> done;
+        if (unordered) {
+            done = completion.take();
+            inFlight.remove(done);
         } else {
-            File file = new File(inputFile);
-            if (!file.exists()) {
-                throw new IOException("File not found: " + inputFile);
+            done = inFlight.poll();
+        }
+        out.append(done.get().getBuffer());
+    }
+
+    private StringWriter grepChunk(File file, CsvChunker.Chunk chunk, ColumnProjection output, ColumnProjection target) throws IOException {
+        StringWriter out = new StringWriter();
+        // The header record of the first chunk is skipped
+        try (RecordReader records = io.openRecords(file, chunk);
+             RecordWriter csv = new CsvRecordWriter(CsvOutput.csv(out))) {
+
+            while (records.next()) {
+                if (matches(target.get(records, 0))) {
+                    output.print(records, csv);
+                }
             }
-            return new FileReader(file);
         }
+        return out;
     }
 
     private String resolveColumn(List<String> headers) {
@@ -1,7 +1,9 @@
 package org.example.commands;
 
-import org.apache.commons.csv.*;
+import org.example.io.RecordReader;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
@@ -11,45 +13,82 @@ import java.util.concurrent.Callable;
 @Command(name = "csvlook", description = "Pretty-print CSV data in a table format")
 public class CsvLookCommand implements Callable<Integer> {
 
+    private static final int DEFAULT_SAMPLE_ROWS = 1000;
+    private static final String ELLIPSIS = "...";
+    // Marks values cut to fit columns too narrow for the ellipsis
+    private static final char SHORT_ELLIPSIS = '~';
+
     @Parameters(index = "0", description = "CSV file to display (use '-' for stdin)", arity = "0..1")
     private String inputFile = "-";
 
+    @Option(names = {"-s", "--sample-rows"}, description = "Size columns from the first N rows and stream the rest; longer values are truncated")
+    private Integer sampleRows;
+
+    @Option(names = {"-w", "--max-column-width"}, description = "Truncate values wider than N characters; streams like --sample-rows (default sample: " + DEFAULT_SAMPLE_ROWS + " rows)")
+    private Integer maxColumnWidth;
+
+    @Mixin
+    private IoOptions io;
+
     @Override
     public Integer call() throws Exception {
-        try (Reader reader = getReader();
-             CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+        if (sampleRows != null && sampleRows < 0) {
+            System.err.println("Error: Number of sample rows must not be negative");
+            return 1;
+        }
+        if (maxColumnWidth != null && maxColumnWidth < 1) {
+            System.err.println("Error: Maximum column width must be at least 1");
+            return 1;
+        }
 
-            List<String> headers = new ArrayList<>(parser.getHeaderMap().keySet());
-            List<List<String>> rows = new ArrayList<>();
+        try (RecordReader records = io.openRecords(inputFile)) {
 
-            // Read all records
-            for (CSVRecord record : parser) {
-                List<String> row = new ArrayList<>();
-                for (String header : headers) {
-                    row.add(record.get(header));
-                }
+            Map<String, Integer> headerMap = records.getHeaderMap();
+            List<String> headers = new ArrayList<>(headerMap.keySet());
+            ColumnProjection projection = ColumnProjection.of(headers, headerMap);
+
+            // Without a sample size or width limit the whole file is needed to size the columns
+            boolean streaming = sampleRows != null || maxColumnWidth != null;
+            int sampleSize = !streaming ? Integer.MAX_VALUE : sampleRows != null ? sampleRows : DEFAULT_SAMPLE_ROWS;
+
+            List<String[]> rows = new ArrayList<>();
+            while (rows.size() < sampleSize && records.next()) {
+                String[] row = new String[projection.size()];
+                projection.read(records, row);
                 rows.add(row);
             }
 
             // Calculate column widths
             int[] widths = calculateColumnWidths(headers, rows);
+            if (maxColumnWidth != null) {
+                for (int i = 0; i < widths.length; i++) {
+                    widths[i] = Math.min(widths[i], maxColumnWidth);
+                }
+            }
 
-            // Print header separator
-            printSeparator(widths);
+            try (Writer out = io.openOutput()) {
+                String separator = buildSeparator(widths);
 
-            // Print header
-            printRow(headers, widths);
+                // Print header between separators
+                out.write(separator);
+                printRow(out, headers.toArray(new String[0]), widths);
+                out.write(separator);
 
-            // Print header separator
-            printSeparator(widths);
+                // Print sampled rows, then stream the remaining ones
+                for (String[] row : rows) {
+                    printRow(out, row, widths);
+                }
+                rows.clear();
 
-            // Print data rows
-            for (List<String> row : rows) {
-                printRow(row, widths);
-            }
+                String[] row = new String[projection.size()];
+                while (records.next()) {
+                    projection.read(records, row);
+                    printRow(out, row, widths);
+                }
 
-            // Print footer separator
-            printSeparator(widths);
+                // Print footer separator
+                out.write(separator);
+            }
 
             return 0;
 
@@ -59,19 +98,7 @@ public class CsvLookCommand implements Callable<Integer> {
         }
     }
 
-    private Reader getReader() throws IOException {
-        if ("-".equals(inputFile)) {
-            return new InputStreamReader(System.in);
-        } else {
-            File file = new File(inputFile);
-            if (!file.exists()) {
-                throw new IOException("File not found: " + inputFile);
-            }
-            return new FileReader(file);
-        }
-    }
-
-    private int[] calculateColumnWidths(List<String> headers, List<List<String>> rows) {
+    private int[] calculateColumnWidths(List<String> headers, List<String[]> rows) {
         int[] widths = new int[headers.size()];
 
         // Initialize with header widths
@@ -80,38 +107,51 @@ public class CsvLookCommand implements Callable<Integer> {
         }
 
         // Update with data widths
-        for (List<String> row : rows) {
-            for (int i = 0; i < row.size() && i < widths.length; i++) {
-                widths[i] = Math.max(widths[i], row.get(i).length());
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length && i < widths.length; i++) {
+                widths[i] = Math.max(widths[i], row[i].length());
             }
         }
 
         return widths;
     }
 
-    private void printSeparator(int[] widths) {
-        System.out.print("|");
+    private String buildSeparator(int[] widths) {
+        StringBuilder separator = new StringBuilder("|");
         for (int width : widths) {
-            System.out.print("-");
+            separator.append('-');
             for (int i = 0; i < width; i++) {
-                System.out.print("-");
+                separator.append('-');
             }
-            System.out.print("-|");
+            separator.append("-|");
         }
-        System.out.println();
+        separator.append(System.lineSeparator());
+        return separator.toString();
     }
 
-    private void printRow(List<String> values, int[] widths) {
-        System.out.print("|");
-        for (int i = 0; i < values.size(); i++) {
-            String value = values.get(i);
+    private void printRow(Writer out, String[] values, int[] widths) throws IOException {
+        out.write('|');
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
             int width = widths[i];
-            System.out.print(" " + padRight(value, width) + " |");
+            out.write(' ');
+            if (value.length() > width) {
+                // Only possible when widths were sampled or capped
+                if (width > ELLIPSIS.length()) {
+                    out.write(value, 0, width - ELLIPSIS.length());
+                    out.write(ELLIPSIS);
+                } else {
+                    out.write(value, 0, width - 1);
+                    out.write(SHORT_ELLIPSIS);
+                }
+            } else {
+                out.write(value);
+                for (int pad = value.length(); pad < width; pad++) {
+                    out.write(' ');
+                }
+            }
+            out.write(" |");
         }
-        System.out.println();
-    }
-
-    private String padRight(String s, int n) {
-        return String.format("%-" + n + "s", s);
+        out.write(System.lineSeparator());
     }
 }
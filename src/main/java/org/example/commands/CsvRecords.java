@@ -0,0 +1,24 @@
+package org.example.commands;
+
+import org.example.io.RecordReader;
+
+/**
+ * Access to record fields by header position.
+ */
+final class CsvRecords {
+
+    private CsvRecords() {
+    }
+
+    /**
+     * Field of the reader's current record at the header's index; fails for short records
+     * with the same message as a lookup by name in Commons CSV.
+     */
+    static String get(RecordReader record, int index, String header) {
+        if (index >= record.size()) {
+            throw new IllegalArgumentException(String.format("Index for header '%s' is %d but CSVRecord only has %d values!",
+                    header, index, record.size()));
+        }
+        return record.get(index);
+    }
+}
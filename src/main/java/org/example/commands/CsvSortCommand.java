@@ -1,7 +1,14 @@
 package org.example.commands;
 
-import org.apache.commons.csv.*;
+import org.example.io.ByteSize;
+import org.example.io.RecordReader;
+import org.example.io.RecordWriter;
+import org.example.sort.ExternalSorter;
+import org.example.sort.RowSorter;
+import org.example.sort.SortKeys;
+import org.example.sort.TopNSorter;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
@@ -21,18 +28,27 @@ public class CsvSortCommand implements Callable<Integer> {
     @Option(names = {"-r", "--reverse"}, description = "Sort in descending order")
     private boolean reverse;
 
+    @Option(names = {"-M", "--max-memory"}, description = "Memory budget for buffered rows before spilling sorted runs to disk, e.g. 512M or 2G (default: a quarter of the max heap)")
+    private String maxMemory;
+
+    @Option(names = {"-T", "--temp-dir"}, description = "Directory for temporary sort runs (default: java.io.tmpdir)")
+    private File tempDir;
+
+    @Option(names = {"-j", "--threads"}, description = "Number of threads used for key extraction and sorting (default: 1)")
+    private int threads = 1;
+
+    @Option(names = {"-l", "--limit"}, description = "Output only the first N rows of the sorted data, using memory proportional to N")
+    private Integer limit;
+
+    @Mixin
+    private IoOptions io;
+
     @Override
     public Integer call() throws Exception {
-        try (Reader reader = getReader();
-             CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-
-            List<String> headers = new ArrayList<>(parser.getHeaderMap().keySet());
-            List<CSVRecord> records = new ArrayList<>();
+        try (RecordReader records = io.openRecords(inputFile)) {
 
-            // Read all records
-            for (CSVRecord record : parser) {
-                records.add(record);
-            }
+            Map<String, Integer> headerMap = records.getHeaderMap();
+            List<String> headers = new ArrayList<>(headerMap.keySet());
 
             // Determine sort columns
             List<String> columnsToSort = determineSortColumns(headers);
@@ -42,44 +58,47 @@ public class CsvSortCommand implements Callable<Integer> {
                 return 1;
             }
 
-            // Sort records
-            records.sort((r1, r2) -> {
-                for (String col : columnsToSort) {
-                    String v1 = r1.get(col);
-                    String v2 = r2.get(col);
-                    
-                    // Try numeric comparison first
-                    try {
-                        Double d1 = Double.parseDouble(v1);
-                        Double d2 = Double.parseDouble(v2);
-                        int cmp = d1.compareTo(d2);
-                        if (cmp != 0) {
-                            return reverse ? -cmp : cmp;
-                        }
-                    } catch (NumberFormatException e) {
-                        // Fall back to string comparison
-                        int cmp = v1.compareTo(v2);
-                        if (cmp != 0) {
-                            return reverse ? -cmp : cmp;
-                        }
-                    }
-                }
-                return 0;
-            });
-
-            // Output sorted data
-            try (CSVPrinter printer = new CSVPrinter(System.out, CSVFormat.DEFAULT)) {
-                printer.printRecord(headers);
-
-                for (CSVRecord record : records) {
-                    List<String> values = new ArrayList<>();
-                    for (String header : headers) {
-                        values.add(record.get(header));
-                    }
-                    printer.printRecord(values);
+            int[] sortIndexes = new int[columnsToSort.size()];
+            for (int i = 0; i < sortIndexes.length; i++) {
+                sortIndexes[i] = headers.indexOf(columnsToSort.get(i));
+            }
+
+            // Sort keys are parsed once per row, comparisons work on the parsed values
+            SortKeys keys = new SortKeys(sortIndexes, reverse);
+
+            if (threads < 1) {
+                System.err.println("Error: Number of threads must be at least 1");
+                return 1;
+            }
+
+            if (limit != null && limit < 0) {
+                System.err.println("Error: Limit must not be negative");
+                return 1;
+            }
+
+            File runDir = tempDir != null ? tempDir : new File(System.getProperty("java.io.tmpdir"));
+            if (!runDir.isDirectory()) {
+                System.err.println("Error: Temp directory not found: " + runDir);
+                return 1;
+            }
+
+            try (RowSorter sorter = limit != null
+                    ? new TopNSorter(keys, limit)
+                    : new ExternalSorter(keys, determineMemoryBudget(), runDir, threads)) {
+                // Read all records in a single pass, the sorter decides what to keep in memory
+                ColumnProjection projection = ColumnProjection.of(headers, headerMap);
+                while (records.next()) {
+                    // The sorter keeps the array, so it cannot be reused
+                    String[] values = new String[projection.size()];
+                    projection.read(records, values);
+                    sorter.add(values);
                 }
 
-                printer.flush();
+                // Output sorted data
+                try (RecordWriter out = io.openRecordOutput()) {
+                    out.writeRecord(headers);
+                    sorter.writeSorted(out::writeRecord);
+                }
             }
             return 0;
 
@@ -89,16 +108,21 @@ public class CsvSortCommand implements Callable<Integer> {
         }
     }
 
-    private Reader getReader() throws IOException {
-        if ("-".equals(inputFile)) {
-            return new InputStreamReader(System.in);
-        } else {
-            File file = new File(inputFile);
-            if (!file.exists()) {
-                throw new IOException("File not found: " + inputFile);
-            }
-            return new FileReader(file);
+    private long determineMemoryBudget() {
+        if (maxMemory == null) {
+            return Runtime.getRuntime().maxMemory() / 4;
+        }
+
+        long budget;
+        try {
+            budget = ByteSize.parse(maxMemory);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid memory budget: " + maxMemory);
+        }
+        if (budget < ExternalSorter.MIN_MEMORY_BUDGET) {
+            throw new IllegalArgumentException("Memory budget must be at least 64K: " + maxMemory);
         }
+        return budget;
     }
 
     private List<String> determineSortColumns(List<String> headers) {
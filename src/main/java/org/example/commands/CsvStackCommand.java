@@ -1,19 +1,51 @@
 package org.example.commands;
 
-import org.apache.commons.csv.*;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.example.io.CsvChunker;
+import org.example.io.CsvInput;
+import org.example.io.CsvOutput;
+import org.example.io.RecordReader;
+import org.example.io.StreamCsvReader;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Command(name = "csvstack", description = "Stack multiple CSV files vertically")
 public class CsvStackCommand implements Callable<Integer> {
 
+    // Output of a file waiting to be written is at most this many blocks of this size
+    private static final int READ_AHEAD_BLOCKS = 4;
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    // Headers longer than this are not cut off at byte level
+    private static final int MAX_HEADER_BYTES = 1 << 16;
+
     @Parameters(description = "CSV files to stack", arity = "1..*")
     private List<String> inputFiles;
 
+    @Option(names = {"-j", "--threads"}, description = "Number of files read and parsed in parallel, written in argument order; the body of a file whose header matches the output header is copied byte for byte (default: 1)")
+    private int threads = 1;
+
+    @Option(names = {"--union-headers"}, description = "Output every column of any file, in order of first appearance; files without a column get empty values")
+    private boolean unionHeaders;
+
+    @Mixin
+    private IoOptions io;
+
     @Override
     public Integer call() throws Exception {
         try {
@@ -21,46 +53,45 @@ public class CsvStackCommand implements Callable<Integer> {
                 System.err.println("Error: At least one input file required");
                 return 1;
             }
+            if (threads < 1) {
+                System.err.println("Error: Number of threads must be at least 1");
+                return 1;
+            }
+
+            if (unionHeaders && inputFiles.contains(CsvInput.STDIN)) {
+                System.err.println("Error: --union-headers cannot read stdin, the headers are read before the records");
+                return 1;
+            }
+
+            // Either all headers up front, or the first file's headers
+            List<String> commonHeaders = unionHeaders ? readUnionHeaders() : null;
+
+            if (threads > 1 && !inputFiles.contains(CsvInput.STDIN)) {
+                stackParallel(commonHeaders);
+                return 0;
+            }
 
-            List<String> commonHeaders = null;
-            
-            try (CSVPrinter printer = new CSVPrinter(System.out, CSVFormat.DEFAULT)) {
+            try (CsvWriter csv = io.openCsvOutput()) {
+                if (commonHeaders != null) {
+                    csv.writeRecord(commonHeaders);
+                }
                 for (String inputFile : inputFiles) {
-                    try (Reader reader = new FileReader(new File(inputFile));
-                         CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+                    try (RecordReader records = io.openRecords(inputFile)) {
 
-                        List<String> headers = new ArrayList<>(parser.getHeaderMap().keySet());
+                        Map<String, Integer> headerMap = records.getHeaderMap();
+                        List<String> headers = new ArrayList<>(headerMap.keySet());
 
-                        // First file establishes the headers
+                        // Otherwise the first file establishes the headers
                         if (commonHeaders == null) {
                             commonHeaders = headers;
-                            printer.printRecord(commonHeaders);
-                        } else {
-                            // Verify headers match
-                            if (!headers.equals(commonHeaders)) {
-                                System.err.println("Warning: Headers don't match in file: " + inputFile);
-                                System.err.println("Expected: " + commonHeaders);
-                                System.err.println("Found: " + headers);
-                            }
+                            csv.writeRecord(commonHeaders);
+                        } else if (!unionHeaders && !headers.equals(commonHeaders)) {
+                            System.err.print(headerWarning(inputFile, commonHeaders, headers));
                         }
 
-                        // Copy all records
-                        for (CSVRecord record : parser) {
-                            List<String> values = new ArrayList<>();
-                            for (String header : commonHeaders) {
-                                try {
-                                    values.add(record.get(header));
-                                } catch (IllegalArgumentException e) {
-                                    // Column doesn't exist in this file
-                                    values.add("");
-                                }
-                            }
-                            printer.printRecord(values);
-                        }
+                        copyRecords(records, columnMap(headerMap, commonHeaders), csv);
                     }
                 }
-
-                printer.flush();
             }
 
             return 0;
@@ -70,4 +101,276 @@ public class CsvStackCommand implements Callable<Integer> {
             return 1;
         }
     }
+
+    private static String headerWarning(String inputFile, List<String> commonHeaders, List<String> headers) {
+        return "Warning: Headers don't match in file: " + inputFile + System.lineSeparator()
+                + "Expected: " + commonHeaders + System.lineSeparator()
+                + "Found: " + headers + System.lineSeparator();
+    }
+
+    /**
+     * Headers of all files, each name once in order of first appearance. Only the header
+     * records are read.
+     */
+    private List<String> readUnionHeaders() throws IOException {
+        Set<String> union = new LinkedHashSet<>();
+        for (String inputFile : inputFiles) {
+            try (RecordReader records = io.openRecords(inputFile)) {
+                union.addAll(records.getHeaderMap().keySet());
+            }
+        }
+        return new ArrayList<>(union);
+    }
+
+    /**
+     * Field index in the file of every output column, -1 for columns the file does not have.
+     */
+    private static int[] columnMap(Map<String, Integer> headerMap, List<String> commonHeaders) {
+        int[] columns = new int[commonHeaders.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = headerMap.getOrDefault(commonHeaders.get(i), -1);
+        }
+        return columns;
+    }
+
+    private static void copyRecords(RecordReader records, int[] columns, CsvWriter csv) throws IOException {
+        while (records.next()) {
+            int size = records.size();
+            CsvWriter.CsvWriterRecord output = csv.writeRecord();
+            for (int column : columns) {
+                // Column doesn't exist in this file or the record is short
+                output.writeField(column >= 0 && column < size ? records.get(column) : "");
+            }
+            output.endRecord();
+        }
+    }
+
+    /**
+     * Reads and parses up to {@code threads} files at once while the output is written in
+     * argument order. Each file hands its output to the writing thread in blocks through a
+     * bounded queue, so memory stays bounded however far the readers get ahead.
+     *
+     * @param headers output headers, or null for the headers of the first file
+     */
+    private void stackParallel(List<String> headers) throws Exception {
+        List<String> commonHeaders = headers != null ? headers : readFirstHeaders();
+        // Bodies can be copied as bytes if they need no re-encoding and records end at a newline byte
+        boolean copyBytes = io.getCharset().equals(io.getOutputCharset()) && io.isChunkable();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (OutputStream out = io.openOutputBytes()) {
+            // Files start in argument order, so the file being written always has a running reader
+            List<FileBlocks> files = new ArrayList<>();
+            for (String inputFile : inputFiles) {
+                FileBlocks blocks = new FileBlocks();
+                files.add(blocks);
+                pool.submit(() -> blocks.produce(() -> readFile(inputFile, commonHeaders, copyBytes, blocks)));
+            }
+
+            Writer text = new OutputStreamWriter(out, io.getOutputCharset());
+            StringWriter header = new StringWriter();
+            try (CsvWriter csv = CsvOutput.csv(header)) {
+                csv.writeRecord(commonHeaders);
+            }
+            text.write(header.toString());
+            for (FileBlocks blocks : files) {
+                blocks.writeTo(text, out);
+            }
+            text.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<String> readFirstHeaders() throws IOException {
+        try (RecordReader records = io.openRecords(inputFiles.get(0))) {
+            return new ArrayList<>(records.getHeaderMap().keySet());
+        }
+    }
+
+    private void readFile(String inputFile, List<String> commonHeaders, boolean copyBytes, FileBlocks blocks) throws IOException {
+        try (RecordReader records = io.openRecords(inputFile)) {
+            Map<String, Integer> headerMap = records.getHeaderMap();
+            List<String> headers = new ArrayList<>(headerMap.keySet());
+            if (headers.equals(commonHeaders) && copyBytes) {
+                File file = new File(inputFile);
+                long bodyStart = bodyStart(file, headers);
+                if (bodyStart >= 0) {
+                    blocks.copy(file, bodyStart);
+                    return;
+                }
+            } else if (!unionHeaders && !headers.equals(commonHeaders)) {
+                blocks.warning = headerWarning(inputFile, commonHeaders, headers);
+            }
+
+            try (CsvWriter csv = CsvOutput.csv(blocks.textOutput())) {
+                copyRecords(records, columnMap(headerMap, commonHeaders), csv);
+            }
+        }
+    }
+
+    /**
+     * Offset of the first record after the header {@code headers}, or -1 if the header
+     * record cannot be cut off at byte level, e.g. because lines end with a bare CR.
+     */
+    private long bodyStart(File file, List<String> headers) throws IOException {
+        long end = CsvChunker.firstRecordEnd(file, MAX_HEADER_BYTES);
+        if (end < 0) {
+            return -1;
+        }
+        byte[] bytes = new byte[(int) end];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        // The bytes before the newline have to be exactly the header record
+        try (RecordReader header = new StreamCsvReader(new StringReader(new String(bytes, io.getCharset())), true)) {
+            return new ArrayList<>(header.getHeaderMap().keySet()).equals(headers) && !header.next() ? end : -1;
+        }
+    }
+
+    /**
+     * Output of one input file, handed from the thread reading the file to the thread writing
+     * the output. Parsed records come as characters, copied bodies as bytes, in blocks of at
+     * most {@link #BLOCK_SIZE}; the end of the file or its error is the last item.
+     */
+    private static final class FileBlocks {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(READ_AHEAD_BLOCKS);
+        // Set before the first block, printed when the file is written
+        private String warning;
+
+        interface Reading {
+            void run() throws IOException;
+        }
+
+        void produce(Reading reading) {
+            Object last = END;
+            try {
+                reading.run();
+            } catch (Exception | Error e) {
+                last = e;
+            }
+            try {
+                queue.put(last);
+            } catch (InterruptedException e) {
+                // The output failed and nobody waits for this file
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Copies the file from {@code start} to its end, ending the last record if the file does not.
+         */
+        void copy(File file, long start) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long position = start;
+                byte last = '\n';
+                while (true) {
+                    ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+                    int read = channel.read(block, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                    block.flip();
+                    last = block.get(block.limit() - 1);
+                    put(block);
+                }
+                if (last != '\n' && last != '\r') {
+                    put(ByteBuffer.wrap("\r\n".getBytes(StandardCharsets.US_ASCII)));
+                }
+            }
+        }
+
+        /**
+         * Writer passing its characters on in blocks; they are handed over when a block is full
+         * and when the writer is closed.
+         */
+        Writer textOutput() {
+            return new Writer() {
+                private char[] block = new char[BLOCK_SIZE];
+                private int length = 0;
+
+                @Override
+                public void write(char[] chars, int offset, int count) throws IOException {
+                    while (count > 0) {
+                        int n = Math.min(count, block.length - length);
+                        System.arraycopy(chars, offset, block, length, n);
+                        length += n;
+                        offset += n;
+                        count -= n;
+                        if (length == block.length) {
+                            handOver();
+                        }
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    // Blocks are handed over when full
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (length > 0) {
+                        handOver();
+                    }
+                }
+
+                private void handOver() throws IOException {
+                    put(CharBuffer.wrap(block, 0, length));
+                    block = new char[BLOCK_SIZE];
+                    length = 0;
+                }
+            };
+        }
+
+        private void put(Object block) throws IOException {
+            try {
+                queue.put(block);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading ahead");
+            }
+        }
+
+        /**
+         * Writes the blocks of the file as they arrive. Characters go through {@code text},
+         * which encodes into {@code out}; bytes go to {@code out} directly.
+         */
+        void writeTo(Writer text, OutputStream out) throws Exception {
+            Object item = take();
+            if (warning != null) {
+                System.err.print(warning);
+            }
+            while (item != END) {
+                if (item instanceof Error) {
+                    throw (Error) item;
+                }
+                if (item instanceof Exception) {
+                    throw (Exception) item;
+                }
+                if (item instanceof CharBuffer) {
+                    CharBuffer chars = (CharBuffer) item;
+                    text.write(chars.array(), chars.position(), chars.remaining());
+                } else {
+                    ByteBuffer bytes = (ByteBuffer) item;
+                    text.flush();
+                    out.write(bytes.array(), bytes.position(), bytes.remaining());
+                }
+                item = take();
+            }
+        }
+
+        private Object take() throws InterruptedIOException {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing");
+            }
+        }
+    }
 }
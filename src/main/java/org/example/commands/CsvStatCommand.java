@@ -1,71 +1,135 @@
 package org.example.commands;
 
-import org.apache.commons.csv.*;
+import org.example.io.CsvChunker;
+import org.example.io.RecordReader;
+import org.example.stats.DistinctCounter;
+import org.example.stats.HeavyHitters;
+import org.example.stats.KllSketch;
+import org.example.stats.NumericStats;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Command(name = "csvstat", description = "Generate summary statistics for CSV columns")
 public class CsvStatCommand implements Callable<Integer> {
 
+    // Smaller chunks are not worth the extra per-chunk statistics
+    private static final long MIN_CHUNK_BYTES = 4L * 1024 * 1024;
+
     @Parameters(index = "0", description = "CSV file to analyze (use '-' for stdin)", arity = "0..1")
     private String inputFile = "-";
 
+    @Option(names = {"--distinct-limit"}, description = "Count up to N distinct values per column exactly, estimate beyond that (default: " + DistinctCounter.DEFAULT_EXACT_LIMIT + ")")
+    private int distinctLimit = DistinctCounter.DEFAULT_EXACT_LIMIT;
+
+    @Option(names = {"-q", "--quantiles"}, description = "Report median, 90th and 99th percentile of numeric columns (approximate for large inputs)")
+    private boolean quantiles;
+
+    @Option(names = {"--quantile-accuracy"}, description = "Size parameter k of the quantile sketch, the rank error shrinks roughly as 1/k (default: " + KllSketch.DEFAULT_K + ")")
+    private int quantileAccuracy = KllSketch.DEFAULT_K;
+
+    @Option(names = {"--top"}, description = "Report the N most common values of each column")
+    private int top;
+
+    @Option(names = {"--top-capacity"}, description = "Number of counters used to find the most common values (default: " + HeavyHitters.DEFAULT_CAPACITY + ")")
+    private int topCapacity = HeavyHitters.DEFAULT_CAPACITY;
+
+    @Option(names = {"-j", "--threads"}, description = "Number of threads; a file is split at record boundaries and the parts are analyzed in parallel (default: 1)")
+    private int threads = 1;
+
+    @Mixin
+    private IoOptions io;
+
     @Override
     public Integer call() throws Exception {
-        try (Reader reader = getReader();
-             CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
-
-            List<String> headers = new ArrayList<>(parser.getHeaderMap().keySet());
-            Map<String, ColumnStats> stats = new LinkedHashMap<>();
+        if (distinctLimit < 0) {
+            System.err.println("Error: Distinct limit must not be negative");
+            return 1;
+        }
+        if (quantileAccuracy < 2) {
+            System.err.println("Error: Quantile accuracy must be at least 2");
+            return 1;
+        }
+        if (top < 0 || topCapacity < 1) {
+            System.err.println("Error: Invalid --top or --top-capacity");
+            return 1;
+        }
+        if (threads < 1) {
+            System.err.println("Error: Number of threads must be at least 1");
+            return 1;
+        }
 
-            // Initialize stats for each column
-            for (String header : headers) {
-                stats.put(header, new ColumnStats());
+        try {
+            Summary summary;
+            if (threads > 1 && !"-".equals(inputFile) && io.isChunkable() && !io.isCached(inputFile)) {
+                summary = collectParallel();
+            } else {
+                try (RecordReader records = io.openRecords(inputFile)) {
+                    Map<String, Integer> headerMap = records.getHeaderMap();
+                    summary = collect(records, new ArrayList<>(headerMap.keySet()), headerMap);
+                }
             }
 
-            // Collect stats
-            int rowCount = 0;
-            for (CSVRecord record : parser) {
-                rowCount++;
+            List<String> headers = summary.headers;
+            try (Writer out = io.openOutput()) {
+                // Print statistics
+                println(out, "Total rows: " + summary.rowCount);
+                println(out, "");
+
+                int colIndex = 1;
                 for (String header : headers) {
-                    String value = record.get(header);
-                    stats.get(header).addValue(value);
-                }
-            }
+                    ColumnStats colStats = summary.columns[colIndex - 1];
+                    println(out, colIndex + ". \"" + header + "\"");
+                    println(out, "");
+                    println(out, "\tType: " + colStats.getType());
+                    println(out, "\tNulls: " + colStats.getNullCount());
+                    if (colStats.isUniqueCountExact()) {
+                        println(out, "\tUnique values: " + colStats.getUniqueCount());
+                    } else {
+                        println(out, "\tUnique values: ~" + colStats.getUniqueCount() + " (estimated)");
+                    }
 
-            // Print statistics
-            System.out.println("Total rows: " + rowCount);
-            System.out.println();
-
-            int colIndex = 1;
-            for (String header : headers) {
-                ColumnStats colStats = stats.get(header);
-                System.out.println(colIndex + ". \"" + header + "\"");
-                System.out.println();
-                System.out.println("\tType: " + colStats.getType());
-                System.out.println("\tNulls: " + colStats.getNullCount());
-                System.out.println("\tUnique values: " + colStats.getUniqueCount());
-
-                if (colStats.isNumeric()) {
-                    System.out.println("\tMin: " + colStats.getMin());
-                    System.out.println("\tMax: " + colStats.getMax());
-                    System.out.println("\tMean: " + String.format("%.2f", colStats.getMean()));
-                } else {
-                    System.out.println("\tMax length: " + colStats.getMaxLength());
-                }
+                    if (colStats.isNumeric()) {
+                        println(out, "\tMin: " + colStats.getMin());
+                        println(out, "\tMax: " + colStats.getMax());
+                        println(out, "\tMean: " + String.format("%.2f", colStats.getMean()));
+                        println(out, "\tStdDev: " + String.format("%.2f", colStats.getStdDev()));
+                        if (quantiles) {
+                            String approximate = colStats.areQuantilesExact() ? "" : "~";
+                            println(out, "\tMedian: " + approximate + colStats.getQuantile(0.5));
+                            println(out, "\tP90: " + approximate + colStats.getQuantile(0.9));
+                            println(out, "\tP99: " + approximate + colStats.getQuantile(0.99));
+                        }
+                    } else {
+                        println(out, "\tMax length: " + colStats.getMaxLength());
+                    }
 
-                if (colStats.getUniqueCount() <= 5) {
-                    System.out.println("\tValues: " + colStats.getUniqueValues());
-                }
+                    if (colStats.isUniqueCountExact() && colStats.getUniqueCount() <= 5) {
+                        println(out, "\tValues: " + colStats.getUniqueValues());
+                    }
 
-                System.out.println();
-                colIndex++;
-            }
+                    if (top > 0) {
+                        // Counts are lower bounds once the counters had to be pruned
+                        String approximate = colStats.areTopValuesExact() ? "" : "~";
+                        println(out, "\tMost common values:");
+                        for (Map.Entry<String, Long> entry : colStats.getTopValues(top)) {
+                            println(out, "\t\t" + entry.getKey() + " (" + approximate + entry.getValue() + "x)");
+                        }
+                    }
 
+                    println(out, "");
+                    colIndex++;
+                }
+            }
             return 0;
 
         } catch (Exception e) {
@@ -74,25 +138,114 @@ public class CsvStatCommand implements Callable<Integer> {
         }
     }
 
-    private Reader getReader() throws IOException {
-        if ("-".equals(inputFile)) {
-            return new InputStreamReader(System.in);
-        } else {
-            File file = new File(inputFile);
-            if (!file.exists()) {
-                throw new IOException("File not found: " + inputFile);
+    private static void println(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write(System.lineSeparator());
+    }
+
+    private Summary collect(RecordReader records, List<String> headers, Map<String, Integer> headerMap) throws IOException {
+        int[] indexes = new int[headers.size()];
+        Summary summary = new Summary(headers);
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = headerMap.get(headers.get(i));
+            summary.columns[i] = new ColumnStats(distinctLimit, quantiles ? quantileAccuracy : 0, top > 0 ? Math.max(top, topCapacity) : 0);
+        }
+
+        while (records.next()) {
+            summary.rowCount++;
+            for (int i = 0; i < indexes.length; i++) {
+                summary.columns[i].addValue(CsvRecords.get(records, indexes[i], headers.get(i)));
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Splits the file at record boundaries, collects statistics of the parts on a thread pool
+     * and merges them in file order.
+     */
+    private Summary collectParallel() throws Exception {
+        File file = new File(inputFile);
+        Map<String, Integer> headerMap;
+        try (RecordReader records = io.openRecords(inputFile)) {
+            headerMap = records.getHeaderMap();
+        }
+        List<String> headers = new ArrayList<>(headerMap.keySet());
+
+        int chunkCount = (int) Math.min(threads * 4L, Math.max(1, file.length() / MIN_CHUNK_BYTES));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<CsvChunker.Chunk> chunks = CsvChunker.split(file, chunkCount, pool);
+
+            // Each part holds exact distinct sets, so only a few are alive: the oldest one is
+            // merged as soon as it is done, before the next part is submitted
+            int maxInFlight = threads + 1;
+            Deque<Future<Summary>> inFlight = new ArrayDeque<>();
+            Summary summary = null;
+            for (CsvChunker.Chunk chunk : chunks) {
+                if (inFlight.size() == maxInFlight) {
+                    summary = mergeNext(summary, inFlight);
+                }
+                // The header record of the first chunk is skipped
+                inFlight.add(pool.submit(() -> {
+                    try (RecordReader records = io.openRecords(file, chunk)) {
+                        return collect(records, headers, headerMap);
+                    }
+                }));
+            }
+            while (!inFlight.isEmpty()) {
+                summary = mergeNext(summary, inFlight);
+            }
+            return summary;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Summary mergeNext(Summary summary, Deque<Future<Summary>> inFlight) throws Exception {
+        Summary part = inFlight.poll().get();
+        if (summary == null) {
+            return part;
+        }
+        summary.merge(part);
+        return summary;
+    }
+
+    private static class Summary {
+        private final List<String> headers;
+        private final ColumnStats[] columns;
+        private long rowCount = 0;
+
+        Summary(List<String> headers) {
+            this.headers = headers;
+            this.columns = new ColumnStats[headers.size()];
+        }
+
+        void merge(Summary next) {
+            rowCount += next.rowCount;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].merge(next.columns[i]);
             }
-            return new FileReader(file);
         }
     }
 
     private static class ColumnStats {
-        private int nullCount = 0;
-        private Set<String> uniqueValues = new LinkedHashSet<>();
-        private List<Double> numericValues = new ArrayList<>();
+        private long nullCount = 0;
+        private final DistinctCounter uniqueValues;
+        private final NumericStats numericStats = new NumericStats();
+        private final KllSketch quantileSketch;
+        private final HeavyHitters topValues;
         private boolean isNumeric = true;
         private int maxLength = 0;
 
+        ColumnStats(int distinctLimit, int quantileAccuracy, int topCapacity) {
+            this.uniqueValues = new DistinctCounter(distinctLimit);
+            this.quantileSketch = quantileAccuracy > 0 ? new KllSketch(quantileAccuracy) : null;
+            this.topValues = topCapacity > 0 ? new HeavyHitters(topCapacity) : null;
+        }
+
         public void addValue(String value) {
             if (value == null || value.trim().isEmpty()) {
                 nullCount++;
@@ -100,52 +253,111 @@ public class CsvStatCommand implements Callable<Integer> {
             }
 
             uniqueValues.add(value);
+            if (topValues != null) {
+                topValues.add(value);
+            }
             maxLength = Math.max(maxLength, value.length());
 
             if (isNumeric) {
                 try {
                     double numValue = Double.parseDouble(value);
-                    numericValues.add(numValue);
+                    numericStats.add(numValue);
+                    if (quantileSketch != null) {
+                        quantileSketch.add(numValue);
+                    }
                 } catch (NumberFormatException e) {
                     isNumeric = false;
-                    numericValues.clear();
+                    numericStats.reset();
+                    if (quantileSketch != null) {
+                        quantileSketch.reset();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the statistics of the rows following the ones seen by this instance.
+         */
+        public void merge(ColumnStats next) {
+            nullCount += next.nullCount;
+            maxLength = Math.max(maxLength, next.maxLength);
+            uniqueValues.merge(next.uniqueValues);
+            if (topValues != null) {
+                topValues.merge(next.topValues);
+            }
+
+            if (isNumeric && next.isNumeric) {
+                numericStats.merge(next.numericStats);
+                if (quantileSketch != null) {
+                    quantileSketch.merge(next.quantileSketch);
+                }
+            } else if (isNumeric) {
+                // A non-numeric value later in the file turns the whole column into text
+                isNumeric = false;
+                numericStats.reset();
+                if (quantileSketch != null) {
+                    quantileSketch.reset();
                 }
             }
         }
 
         public String getType() {
-            if (isNumeric && !numericValues.isEmpty()) {
+            if (isNumeric()) {
                 return "Number";
             }
             return "Text";
         }
 
-        public int getNullCount() {
+        public long getNullCount() {
             return nullCount;
         }
 
-        public int getUniqueCount() {
-            return uniqueValues.size();
+        public long getUniqueCount() {
+            return uniqueValues.getCount();
+        }
+
+        public boolean isUniqueCountExact() {
+            return uniqueValues.isExact();
         }
 
         public Set<String> getUniqueValues() {
-            return uniqueValues;
+            return uniqueValues.getValues();
         }
 
         public boolean isNumeric() {
-            return isNumeric && !numericValues.isEmpty();
+            return isNumeric && numericStats.getCount() > 0;
         }
 
         public double getMin() {
-            return numericValues.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+            return numericStats.getMin();
         }
 
         public double getMax() {
-            return numericValues.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+            return numericStats.getMax();
         }
 
         public double getMean() {
-            return numericValues.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            return numericStats.getMean();
+        }
+
+        public double getStdDev() {
+            return numericStats.getStdDev();
+        }
+
+        public double getQuantile(double fraction) {
+            return quantileSketch.getQuantile(fraction);
+        }
+
+        public boolean areQuantilesExact() {
+            return quantileSketch.isExact();
+        }
+
+        public List<Map.Entry<String, Long>> getTopValues(int n) {
+            return topValues.getTop(n);
+        }
+
+        public boolean areTopValuesExact() {
+            return topValues.isExact();
         }
 
         public int getMaxLength() {
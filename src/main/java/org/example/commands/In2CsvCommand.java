@@ -1,27 +1,34 @@
 package org.example.commands;
 
-import com.monitorjbl.xlsx.StreamingReader;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.poi.hssf.eventusermodel.*;
 import org.apache.poi.hssf.record.BOFRecord;
 import org.apache.poi.hssf.record.BoundSheetRecord;
-import org.apache.poi.hssf.record.LabelSSTRecord;
-import org.apache.poi.hssf.record.NumberRecord;
-import org.apache.poi.hssf.record.RowRecord;
-import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
-import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.util.IOUtils;
+import org.example.excel.HssfCsvConverter;
+import org.example.excel.XlsxCsvConverter;
+import org.example.excel.XlsxWorkbook;
+import org.example.io.CsvRecordWriter;
+import org.example.io.RecordWriter;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Command(name = "in2csv", description = "Convert Excel files to CSV")
 public class In2CsvCommand implements Callable<Integer> {
@@ -35,10 +42,61 @@ public class In2CsvCommand implements Callable<Integer> {
     @Option(names = {"-s", "--sheet"}, description = "Sheet name or index to convert (default: first sheet)")
     private String sheetName;
 
+    @Option(names = {"--all-sheets"}, description = "Convert every sheet to its own CSV file in --output-dir")
+    private boolean allSheets;
+
+    @Option(names = {"--output-dir"}, description = "Directory for the files of --all-sheets, named after the sheets")
+    private File outputDir;
+
+    @Option(names = {"-j", "--threads"}, description = "Number of .xlsx sheets converted in parallel with --all-sheets (default: number of processors)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = {"--shared-strings"}, description = "Where to keep the shared strings of .xlsx files: memory, or disk for tables that do not fit in the heap (default: memory)")
+    private String sharedStrings = "memory";
+
+    @Option(names = {"--date-format"}, description = "Pattern for date cells, e.g. dd.MM.yyyy (default: ISO-8601, yyyy-MM-dd with the time if it is not midnight)")
+    private String datePattern;
+
+    private DateTimeFormatter dateFormat;
+
+    @Mixin
+    private IoOptions io;
+
     @Override
     public Integer call() throws Exception {
         IOUtils.setByteArrayMaxOverride(500_000_000);
 
+        if (!sharedStrings.equals("memory") && !sharedStrings.equals("disk")) {
+            System.err.println("Error: --shared-strings must be memory or disk");
+            return 1;
+        }
+
+        if (datePattern != null) {
+            try {
+                dateFormat = DateTimeFormatter.ofPattern(datePattern);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: Invalid date format: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        if (allSheets && outputDir == null) {
+            System.err.println("Error: --all-sheets requires --output-dir");
+            return 1;
+        }
+        if (!allSheets && outputDir != null) {
+            System.err.println("Error: --output-dir requires --all-sheets");
+            return 1;
+        }
+        if (allSheets && sheetName != null) {
+            System.err.println("Error: --all-sheets cannot be combined with --sheet");
+            return 1;
+        }
+        if (threads < 1) {
+            System.err.println("Error: Number of threads must be at least 1");
+            return 1;
+        }
+
         if (!inputFile.exists()) {
             System.err.println("Error: File not found: " + inputFile);
             return 1;
@@ -46,139 +104,174 @@ public class In2CsvCommand implements Callable<Integer> {
 
         FileMagic fileMagic = FileMagic.valueOf(inputFile);
 
+        if (allSheets && !listNames) {
+            if (fileMagic != FileMagic.OLE2 && fileMagic != FileMagic.OOXML) {
+                System.err.println("Unsupported file type: " + fileMagic.name());
+                return 1;
+            }
+            if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+                System.err.println("Error: Cannot create output directory: " + outputDir);
+                return 1;
+            }
+            try {
+                if (fileMagic == FileMagic.OLE2) {
+                    HssfCsvConverter.convertAll(inputFile, dateFormat, new SheetFiles()::open);
+                } else {
+                    convertAllOoxmlSheets(inputFile);
+                }
+            } catch (Exception e) {
+                System.err.println("Error converting Excel to CSV: " + e.getMessage());
+                return 1;
+            }
+            return 0;
+        }
+
         switch (fileMagic) {
             case OLE2:
                 if (listNames) {
-                    listHssfSheetNames(inputFile);
+                    return listHssfSheetNames(inputFile);
                 } else {
-                    System.err.println("Error: Converting Excel 97-2003 (.xls) to CSV is not fully implemented yet.");
-                    System.err.println("Please convert your file to .xlsx format first or use sheet listing with -n option.");
-                    return 1;
+                    return convertHssfToCsv(inputFile, sheetName);
                 }
-                break;
             case OOXML:
                 if (listNames) {
-                    listOoxmlSheetNames(inputFile);
+                    return listOoxmlSheetNames(inputFile);
                 } else {
-                    convertOoxmlToCsv(inputFile, sheetName);
+                    return convertOoxmlToCsv(inputFile, sheetName);
                 }
-                break;
             default:
                 System.err.println("Unsupported file type: " + fileMagic.name());
                 return 1;
         }
-
-        return 0;
     }
 
-    private void listOoxmlSheetNames(File file) {
-        try (Workbook workbook = StreamingReader.builder()
-                .rowCacheSize(100)
-                .bufferSize(4096)
-                .open(file)) {
-            for (Sheet sheet : workbook) {
-                System.out.println(sheet.getSheetName());
+    private int listOoxmlSheetNames(File file) {
+        // Only workbook.xml is read, not the sheets or shared strings
+        try (XlsxWorkbook workbook = XlsxWorkbook.open(file, false, null);
+             Writer out = io.openOutput()) {
+            for (String name : workbook.getSheetNames()) {
+                out.write(name + System.lineSeparator());
             }
         } catch (Exception e) {
             System.err.println("Error reading Excel file: " + e.getMessage());
+            return 1;
         }
+        return 0;
     }
 
-    private void listHssfSheetNames(File file) throws IOException {
-        try (FileInputStream fin = new FileInputStream(file);
-             POIFSFileSystem poifs = new POIFSFileSystem(fin);
-             InputStream din = poifs.createDocumentInputStream("Workbook")) {
+    private int listHssfSheetNames(File file) {
+        try (POIFSFileSystem poifs = new POIFSFileSystem(file, true);
+             InputStream din = poifs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(poifs.getRoot()))) {
 
+            // Sheet names are in the workbook globals, stop when the first sheet starts
+            List<String> names = new ArrayList<>();
             HSSFRequest req = new HSSFRequest();
-            req.addListener((org.apache.poi.hssf.record.Record record) -> {
-                BoundSheetRecord bsr = (BoundSheetRecord) record;
-                System.out.println(bsr.getSheetname());
-            }, BoundSheetRecord.sid);
+            req.addListenerForAllRecords(new AbortableHSSFListener() {
+                @Override
+                public short abortableProcessRecord(org.apache.poi.hssf.record.Record record) {
+                    if (record instanceof BoundSheetRecord) {
+                        names.add(((BoundSheetRecord) record).getSheetname());
+                    } else if (record instanceof BOFRecord && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+                        return 1;
+                    }
+                    return 0;
+                }
+            });
 
             HSSFEventFactory factory = new HSSFEventFactory();
-            factory.processEvents(req, din);
-        }
-    }
+            factory.abortableProcessEvents(req, din);
 
-    private void convertOoxmlToCsv(File file, String targetSheetName) {
-        try (Workbook workbook = StreamingReader.builder()
-                .rowCacheSize(100)
-                .bufferSize(4096)
-                .open(file)) {
-
-            Sheet targetSheet = null;
-            
-            if (targetSheetName == null) {
-                targetSheet = workbook.getSheetAt(0);
-            } else {
-                // Try to parse as index first
-                try {
-                    int index = Integer.parseInt(targetSheetName);
-                    targetSheet = workbook.getSheetAt(index);
-                } catch (NumberFormatException e) {
-                    // Not a number, try as sheet name
-                    for (Sheet sheet : workbook) {
-                        if (sheet.getSheetName().equals(targetSheetName)) {
-                            targetSheet = sheet;
-                            break;
-                        }
-                    }
+            try (Writer out = io.openOutput()) {
+                for (String name : names) {
+                    out.write(name + System.lineSeparator());
                 }
             }
+        } catch (Exception e) {
+            System.err.println("Error reading Excel file: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
 
-            if (targetSheet == null) {
+    private int convertOoxmlToCsv(File file, String targetSheetName) {
+        try (RecordWriter csv = io.openRecordOutput()) {
+            if (!XlsxCsvConverter.convert(file, targetSheetName, sharedStrings.equals("disk"), dateFormat, csv)) {
                 System.err.println("Error: Sheet not found: " + targetSheetName);
-                return;
-            }
-
-            try (CSVPrinter csvPrinter = new CSVPrinter(System.out, CSVFormat.DEFAULT)) {
-                for (Row row : targetSheet) {
-                    List<String> values = new ArrayList<>();
-                    for (Cell cell : row) {
-                        values.add(getCellValueAsString(cell));
-                    }
-                    csvPrinter.printRecord(values);
-                }
-
-                csvPrinter.flush();
+                return 1;
             }
         } catch (Exception e) {
             System.err.println("Error converting Excel to CSV: " + e.getMessage());
+            return 1;
         }
+        return 0;
     }
 
-    private void convertHssfToCsv(File file, String targetSheetName) {
-        System.err.println("HSSF (Excel 97-2003) conversion to CSV not yet fully implemented. Use OOXML format (.xlsx)");
+    /**
+     * Converts the sheets on a thread pool; the workbook, its shared strings and styles are
+     * opened once and shared by all sheets.
+     */
+    private void convertAllOoxmlSheets(File file) throws Exception {
+        try (XlsxWorkbook workbook = XlsxWorkbook.open(file, sharedStrings.equals("disk"), dateFormat)) {
+            List<String> names = workbook.getSheetNames();
+            SheetFiles files = new SheetFiles();
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, names.size())));
+            try {
+                List<Future<?>> sheets = new ArrayList<>();
+                for (int i = 0; i < names.size(); i++) {
+                    int index = i;
+                    File out = files.file(index, names.get(index));
+                    sheets.add(pool.submit(() -> {
+                        try (RecordWriter csv = new CsvRecordWriter(io.openCsvOutput(out))) {
+                            workbook.convert(index, csv);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> sheet : sheets) {
+                    sheet.get();
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
     }
 
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return "";
+    /**
+     * Output files of --all-sheets: the sheet name with characters that are not allowed in file
+     * names replaced, and the sheet number appended if two names end up the same.
+     */
+    private class SheetFiles {
+        private final Set<String> used = new HashSet<>();
+
+        File file(int index, String name) {
+            String base = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+            if (base.isEmpty() || base.startsWith(".")) {
+                base = "sheet" + (index + 1) + base;
+            }
+            if (!used.add(base.toLowerCase(Locale.ROOT))) {
+                base = base + "_" + (index + 1);
+                used.add(base.toLowerCase(Locale.ROOT));
+            }
+            return new File(outputDir, base + ".csv");
         }
 
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
-                } else {
-                    double value = cell.getNumericCellValue();
-                    // Check if it's a whole number
-                    if (value == (long) value) {
-                        return String.format("%d", (long) value);
-                    } else {
-                        return String.valueOf(value);
-                    }
-                }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
-            case BLANK:
-                return "";
-            default:
-                return "";
+        RecordWriter open(int index, String name) throws IOException {
+            return new CsvRecordWriter(io.openCsvOutput(file(index, name)));
         }
     }
+
+    private int convertHssfToCsv(File file, String targetSheetName) {
+        try (RecordWriter csv = io.openRecordOutput()) {
+            if (!HssfCsvConverter.convert(file, targetSheetName, dateFormat, csv)) {
+                System.err.println("Error: Sheet not found: " + targetSheetName);
+                return 1;
+            }
+        } catch (Exception e) {
+            System.err.println("Error converting Excel to CSV: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
 }
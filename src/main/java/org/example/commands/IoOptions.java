@@ -0,0 +1,230 @@
+package org.example.commands;
+
+import org.example.io.ByteSize;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.example.io.ColumnCache;
+import org.example.io.CsvChunker;
+import org.example.io.CsvInput;
+import org.example.io.CsvOutput;
+import org.example.io.CsvRecordWriter;
+import org.example.io.MappedCsvReader;
+import org.example.io.RecordPipe;
+import org.example.io.RecordReader;
+import org.example.io.RecordWriter;
+import org.example.io.StreamCsvReader;
+import picocli.CommandLine.Option;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * Input/output options shared by all commands (picocli mixin).
+ */
+public class IoOptions {
+
+    private static final String DEFAULT_BUFFER_SIZE = "256K";
+
+    @Option(names = {"-e", "--encoding"}, description = "Character encoding of text input (default: UTF-8)")
+    private String encoding = "UTF-8";
+
+    @Option(names = {"-o", "--output"}, description = "Write the output to a file instead of stdout")
+    private File outputFile;
+
+    @Option(names = {"--output-encoding"}, description = "Character encoding of the output (default: UTF-8)")
+    private String outputEncoding = "UTF-8";
+
+    @Option(names = {"--buffer-size"}, description = "Size of the input and output buffers, e.g. 64K or 1M (default: " + DEFAULT_BUFFER_SIZE + ")")
+    private String bufferSize = DEFAULT_BUFFER_SIZE;
+
+    @Option(names = {"--no-mmap"}, description = "Read UTF-8 files through a character stream instead of memory-mapping them")
+    private boolean noMmap;
+
+    @Option(names = {"--no-cache"}, description = "Parse input files even if they have an up-to-date column cache (see csvcache)")
+    private boolean noCache;
+
+    // Set when the command is a stage of a pipeline
+    private RecordPipe pipeInput;
+    private RecordPipe pipeOutput;
+
+    public Charset getCharset() {
+        return charset(encoding);
+    }
+
+    public Charset getOutputCharset() {
+        return charset(outputEncoding);
+    }
+
+    public int getBufferSize() {
+        long size;
+        try {
+            size = ByteSize.parse(bufferSize);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Buffer size too large: " + bufferSize);
+        }
+        return (int) size;
+    }
+
+    /**
+     * Makes the command a stage of a pipeline: the records of {@code "-"} come from the
+     * previous stage and record output goes to the next one. Null for the first or last stage.
+     */
+    void pipe(RecordPipe input, RecordPipe output) {
+        this.pipeInput = input;
+        this.pipeOutput = output;
+    }
+
+    boolean hasOutputFile() {
+        return outputFile != null;
+    }
+
+    /**
+     * Opens a file, or stdin for {@code "-"}.
+     */
+    public Reader openInput(String path) throws IOException {
+        return CsvInput.open(path, getCharset(), getBufferSize());
+    }
+
+    /**
+     * Opens the records of a file, or of stdin for {@code "-"}. A file with an up-to-date
+     * column cache is read from the cache, otherwise it is parsed as by {@link #parseRecords(String)}.
+     */
+    public RecordReader openRecords(String path) throws IOException {
+        if (pipeInput != null) {
+            checkNoFile(path);
+            return pipeInput.input();
+        }
+        if (!noCache && !CsvInput.STDIN.equals(path)) {
+            RecordReader cached = ColumnCache.open(new File(path), getCharset());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return parseRecords(path);
+    }
+
+    /**
+     * True if {@link #openRecords(String)} reads the file from its column cache, so there is
+     * nothing to parse in parallel.
+     */
+    public boolean isCached(String path) {
+        return pipeInput == null && !noCache && !CsvInput.STDIN.equals(path)
+                && ColumnCache.isFresh(new File(path), getCharset());
+    }
+
+    /**
+     * Parses the records of a file, or of stdin for {@code "-"}. UTF-8 files are memory-mapped
+     * and their fields decoded on demand.
+     */
+    public RecordReader parseRecords(String path) throws IOException {
+        if (CsvInput.STDIN.equals(path) || noMmap || !StandardCharsets.UTF_8.equals(getCharset())) {
+            return new StreamCsvReader(openInput(path), true);
+        }
+        File file = new File(path);
+        if (!file.exists()) {
+            throw new IOException("File not found: " + path);
+        }
+        return new MappedCsvReader(file);
+    }
+
+    /**
+     * Opens the records of one chunk of a file; the header record is skipped in the first chunk.
+     */
+    public RecordReader openRecords(File file, CsvChunker.Chunk chunk) throws IOException {
+        if (pipeInput != null) {
+            checkNoFile(file.getPath());
+        }
+        boolean header = chunk.getIndex() == 0;
+        if (noMmap || !StandardCharsets.UTF_8.equals(getCharset())) {
+            return new StreamCsvReader(openInput(file, chunk), header);
+        }
+        return new MappedCsvReader(file, chunk.getStart(), chunk.getEnd(), header);
+    }
+
+    private static void checkNoFile(String path) throws IOException {
+        if (!CsvInput.STDIN.equals(path)) {
+            throw new IOException("Only the first pipeline stage reads a file, the others read the previous stage: " + path);
+        }
+    }
+
+    public Reader openInput(File file) throws IOException {
+        return CsvInput.open(file, getCharset(), getBufferSize());
+    }
+
+    public Reader openInput(File file, CsvChunker.Chunk chunk) throws IOException {
+        return CsvInput.open(file, chunk, getCharset(), getBufferSize());
+    }
+
+    /**
+     * Buffered output file, or stdout whose writer only flushes when closed.
+     */
+    public Writer openOutput() throws IOException {
+        checkLastStage();
+        if (outputFile != null) {
+            return CsvOutput.file(outputFile, getOutputCharset(), getBufferSize());
+        }
+        return CsvOutput.stdout(getOutputCharset(), getBufferSize());
+    }
+
+    /**
+     * Buffered output file or stdout as bytes in the output encoding, for commands that copy
+     * parts of their input unchanged. Closing stdout only flushes it.
+     */
+    public OutputStream openOutputBytes() throws IOException {
+        checkLastStage();
+        if (outputFile != null) {
+            return CsvOutput.fileBytes(outputFile, getBufferSize());
+        }
+        return CsvOutput.stdoutBytes(getBufferSize());
+    }
+
+    /**
+     * CSV writer on {@link #openOutput()}.
+     */
+    public CsvWriter openCsvOutput() throws IOException {
+        return CsvOutput.csv(openOutput());
+    }
+
+    /**
+     * Records written as CSV to {@link #openOutput()}, or passed to the next pipeline stage.
+     */
+    public RecordWriter openRecordOutput() throws IOException {
+        if (pipeOutput != null) {
+            return pipeOutput.output();
+        }
+        return new CsvRecordWriter(openCsvOutput());
+    }
+
+    private void checkLastStage() throws IOException {
+        if (pipeOutput != null) {
+            throw new IOException("Only the last pipeline stage can write text, the others pass records on");
+        }
+    }
+
+    /**
+     * CSV writer on a buffered file other than {@code --output}, for commands writing several files.
+     */
+    public CsvWriter openCsvOutput(File file) throws IOException {
+        return CsvOutput.csv(CsvOutput.file(file, getOutputCharset(), getBufferSize()));
+    }
+
+    /**
+     * True if files in the input encoding can be split at byte level for parallel processing.
+     */
+    public boolean isChunkable() {
+        return CsvChunker.supports(getCharset());
+    }
+
+    private static Charset charset(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalArgumentException("Unsupported encoding: " + name);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.commands;
+
+import org.example.io.RecordPipe;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Unmatched;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+@Command(name = "pipeline", description = {
+        "Run commands chained like a shell pipeline in one process, e.g.",
+        "  pipeline in2csv data.xlsx :: csvcut -c id,name :: csvsort -c name",
+        "Each command runs on its own thread and passes its rows to the next one in memory."})
+public class PipelineCommand implements Callable<Integer> {
+
+    private static final String SEPARATOR = "::";
+
+    private static final Map<String, Supplier<Callable<Integer>>> COMMANDS = Map.of(
+            "in2csv", In2CsvCommand::new,
+            "csvcut", CsvCutCommand::new,
+            "csvgrep", CsvGrepCommand::new,
+            "csvsort", CsvSortCommand::new,
+            "csvstat", CsvStatCommand::new,
+            "csvlook", CsvLookCommand::new);
+
+    // Write text instead of records, so they can only come last
+    private static final Set<String> LAST_ONLY = Set.of("csvstat", "csvlook");
+
+    // The command names and their arguments, picocli cannot know the options of every stage
+    @Unmatched
+    private List<String> arguments = new ArrayList<>();
+
+    @Override
+    public Integer call() throws Exception {
+        List<List<String>> stageArguments = splitStages();
+        if (stageArguments.isEmpty()) {
+            System.err.println("Error: No commands given, separate them with " + SEPARATOR);
+            return 1;
+        }
+
+        int last = stageArguments.size() - 1;
+        List<Callable<Integer>> commands = new ArrayList<>();
+        List<IoOptions> ios = new ArrayList<>();
+        for (int i = 0; i <= last; i++) {
+            List<String> args = stageArguments.get(i);
+            if (args.isEmpty()) {
+                System.err.println("Error: Empty pipeline stage " + (i + 1));
+                return 1;
+            }
+            String name = args.get(0);
+            Supplier<Callable<Integer>> command = COMMANDS.get(name);
+            if (command == null) {
+                System.err.println("Error: Unknown pipeline command: " + name + ", expected one of " + new TreeSet<>(COMMANDS.keySet()));
+                return 1;
+            }
+            if (i > 0 && name.equals("in2csv")) {
+                System.err.println("Error: in2csv can only be the first pipeline stage");
+                return 1;
+            }
+            if (i < last && LAST_ONLY.contains(name)) {
+                System.err.println("Error: " + name + " can only be the last pipeline stage");
+                return 1;
+            }
+
+            Callable<Integer> stage = command.get();
+            CommandLine commandLine = new CommandLine(stage);
+            try {
+                commandLine.parseArgs(args.subList(1, args.size()).toArray(new String[0]));
+            } catch (ParameterException e) {
+                System.err.println("Error: " + name + ": " + e.getMessage());
+                return 1;
+            }
+            IoOptions io = (IoOptions) commandLine.getMixins().get("io");
+            if (i < last && io.hasOutputFile()) {
+                System.err.println("Error: " + name + ": Only the last pipeline stage can have --output");
+                return 1;
+            }
+            commands.add(stage);
+            ios.add(io);
+        }
+
+        // Runs of csvcut and csvgrep become one scan, other commands run as they are
+        List<Callable<Integer>> stages = new ArrayList<>();
+        List<List<Integer>> stageCommands = new ArrayList<>();
+        for (int i = 0; i <= last; ) {
+            int end = i;
+            while (end <= last && isScan(commands.get(end))) {
+                end++;
+            }
+            if (end == i) {
+                stages.add(commands.get(i));
+                stageCommands.add(List.of(i));
+                i++;
+                continue;
+            }
+            List<ScanStep> steps = new ArrayList<>();
+            List<Integer> indexes = new ArrayList<>();
+            for (int j = i; j < end; j++) {
+                ScanStep step = (ScanStep) commands.get(j);
+                // Separate stages would fail when they open the file
+                if (j > 0 && !step.getInputFile().equals("-")) {
+                    System.err.println("Error: Only the first pipeline stage reads a file, the others read the previous stage: " + step.getInputFile());
+                    return 1;
+                }
+                steps.add(step);
+                indexes.add(j);
+            }
+            stages.add(new ScanStage(steps, ios.get(i), ios.get(end - 1)));
+            stageCommands.add(indexes);
+            i = end;
+        }
+
+        List<RecordPipe> pipes = new ArrayList<>();
+        RecordPipe previous = null;
+        for (int i = 0; i < stages.size(); i++) {
+            RecordPipe next = i < stages.size() - 1 ? new RecordPipe() : null;
+            for (int command : stageCommands.get(i)) {
+                ios.get(command).pipe(previous, next);
+            }
+            pipes.add(next);
+            previous = next;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(stages.size());
+        try {
+            List<Future<Integer>> exits = new ArrayList<>();
+            for (int i = 0; i < stages.size(); i++) {
+                Callable<Integer> stage = stages.get(i);
+                RecordPipe input = i > 0 ? pipes.get(i - 1) : null;
+                RecordPipe output = pipes.get(i);
+                exits.add(pool.submit(() -> runStage(stage, input, output)));
+            }
+            // Every stage reports its own errors
+            int exit = 0;
+            for (Future<Integer> stageExit : exits) {
+                int code = stageExit.get();
+                if (exit == 0) {
+                    exit = code;
+                }
+            }
+            return exit;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static boolean isScan(Callable<Integer> command) {
+        return command instanceof ScanStep && ((ScanStep) command).isScan();
+    }
+
+    private List<List<String>> splitStages() {
+        List<List<String>> stages = new ArrayList<>();
+        if (arguments.isEmpty()) {
+            return stages;
+        }
+        List<String> stage = new ArrayList<>();
+        for (String argument : arguments) {
+            if (argument.equals(SEPARATOR)) {
+                stages.add(stage);
+                stage = new ArrayList<>();
+            } else {
+                stage.add(argument);
+            }
+        }
+        stages.add(stage);
+        return stages;
+    }
+
+    /**
+     * Runs one stage and ends the pipes around it: the next stage gets the end of its input,
+     * or an error if this stage failed, and the previous stage learns it can stop writing.
+     */
+    private static int runStage(Callable<Integer> stage, RecordPipe input, RecordPipe output) {
+        int exit = 1;
+        try {
+            exit = stage.call();
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        } finally {
+            if (input != null) {
+                input.stop(exit != 0);
+            }
+            if (output != null) {
+                if (exit == 0) {
+                    output.finish();
+                } else {
+                    output.fail();
+                }
+            }
+        }
+        return exit;
+    }
+}
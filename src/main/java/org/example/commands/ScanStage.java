@@ -0,0 +1,119 @@
+package org.example.commands;
+
+import org.example.io.RecordReader;
+import org.example.io.RecordWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+/**
+ * Consecutive csvcut and csvgrep stages of a pipeline, run as one scan over their input.
+ *
+ * The steps are planned against the input header: a csvcut narrows the columns, a csvgrep
+ * adds a filter on a column. The filters are pushed down to the reader, which tests a field
+ * as soon as it has split it and skips the rest of a rejected record, and the reader splits
+ * no fields after the last column a step uses. Only output records are decoded beyond their
+ * filtered fields, and no records are built in between the steps.
+ *
+ * Short records fail when a filtered or output column is missing; unlike separate stages,
+ * a record left out by a filter is not checked for columns of an earlier csvcut.
+ */
+final class ScanStage implements Callable<Integer> {
+
+    private final List<ScanStep> steps;
+    private final IoOptions input;
+    private final String inputFile;
+    private final IoOptions output;
+
+    // Planned against the input header
+    private List<String> columns;
+    private final List<String> filterColumns = new ArrayList<>();
+    private final List<Predicate<String>> filters = new ArrayList<>();
+
+    /**
+     * @param input  options of the first step, which reads the input
+     * @param output options of the last step, which writes the output
+     */
+    ScanStage(List<ScanStep> steps, IoOptions input, IoOptions output) {
+        this.steps = steps;
+        this.input = input;
+        this.inputFile = steps.get(0).getInputFile();
+        this.output = output;
+    }
+
+    /**
+     * Columns at the current step, in order.
+     */
+    List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Narrows the columns to {@code selected}, a subset of {@link #getColumns()}.
+     */
+    void select(List<String> selected) {
+        columns = selected;
+    }
+
+    /**
+     * Leaves out records whose value of {@code column} is rejected by {@code filter}.
+     */
+    void filter(String column, Predicate<String> filter) {
+        filterColumns.add(column);
+        filters.add(filter);
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        try (RecordReader records = input.openRecords(inputFile)) {
+
+            Map<String, Integer> headerMap = records.getHeaderMap();
+            columns = new ArrayList<>(headerMap.keySet());
+            for (ScanStep step : steps) {
+                step.plan(this);
+            }
+
+            ColumnProjection projection = ColumnProjection.of(columns, headerMap);
+            ColumnProjection tested = ColumnProjection.of(filterColumns, headerMap);
+
+            // Fields after the last column used are never split
+            int used = 0;
+            for (int i = 0; i < projection.size(); i++) {
+                used = Math.max(used, projection.getIndex(i) + 1);
+            }
+            for (int i = 0; i < tested.size(); i++) {
+                used = Math.max(used, tested.getIndex(i) + 1);
+            }
+            records.limitFields(used);
+
+            boolean[] pushed = new boolean[tested.size()];
+            for (int i = 0; i < pushed.length; i++) {
+                pushed[i] = records.pushFilter(tested.getIndex(i), filters.get(i));
+            }
+
+            try (RecordWriter out = output.openRecordOutput()) {
+                out.writeRecord(columns);
+
+                records:
+                while (records.next()) {
+                    for (int i = 0; i < pushed.length; i++) {
+                        // A pushed down filter was tested, this only fails for short records
+                        String value = tested.get(records, i);
+                        if (!pushed[i] && !filters.get(i).test(value)) {
+                            continue records;
+                        }
+                    }
+                    projection.print(records, out);
+                }
+            }
+            return 0;
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.commands;
+
+import java.io.IOException;
+
+/**
+ * A command that handles each record on its own, selecting columns or records, so that
+ * consecutive pipeline stages of such commands can run as one {@link ScanStage}.
+ */
+interface ScanStep {
+
+    /**
+     * False if the options make the command do something else, like listing column names,
+     * or read its input in a way a scan cannot, like in parallel parts.
+     */
+    boolean isScan();
+
+    /**
+     * The input file argument, {@code "-"} for stdin or the previous stage.
+     */
+    String getInputFile();
+
+    /**
+     * Adds the command to the plan of a scan, resolving its columns against the columns the
+     * scan has at this step. Invalid options fail with the message the command prints.
+     */
+    void plan(ScanStage scan) throws IOException;
+}
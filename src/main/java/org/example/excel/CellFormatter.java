@@ -0,0 +1,207 @@
+package org.example.excel;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Text of numeric cells: dates for cells whose style has a date format, numbers otherwise.
+ *
+ * Whether a style is a date format is decided once per style. Whole numbers and ISO-8601
+ * dates are written without intermediate objects, so a cell costs only its result string;
+ * small whole numbers do not even cost that. One formatter per sheet conversion, it is not
+ * thread-safe.
+ */
+final class CellFormatter {
+
+    /**
+     * Decides whether a style of the workbook has a date format.
+     */
+    interface DateStyles {
+        boolean isDateFormat(int style);
+    }
+
+    private static final String[] SMALL_NUMBERS = new String[1024];
+
+    static {
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
+    // Whole numbers up to this are exact as double and written from the cell text
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long EPOCH_DAY_1900 = LocalDate.of(1900, 1, 1).toEpochDay();
+    private static final long EPOCH_DAY_1904 = LocalDate.of(1904, 1, 1).toEpochDay();
+
+    private final DateTimeFormatter dateFormat;
+    private final boolean date1904;
+    private final DateStyles styles;
+
+    // Per style: 0 not yet known, 1 date, 2 no date
+    private byte[] dateStyles = new byte[64];
+    private final char[] chars = new char[32];
+
+    /**
+     * @param dateFormat pattern for date cells, null for ISO-8601 ({@code yyyy-MM-dd}, with the
+     *                   time of day as {@code THH:mm:ss[.SSS]} if it is not midnight)
+     */
+    CellFormatter(DateTimeFormatter dateFormat, boolean date1904, DateStyles styles) {
+        this.dateFormat = dateFormat;
+        this.date1904 = date1904;
+        this.styles = styles;
+    }
+
+    /**
+     * A numeric cell value; {@code style} is -1 for cells without a style.
+     */
+    String format(int style, double value) {
+        if (isDate(style, value)) {
+            return date(value);
+        }
+        return number(value);
+    }
+
+    /**
+     * A numeric cell value given as text, like the {@code <v>} of an .xlsx cell. Whole numbers
+     * that are written the way they would be printed are returned as they are.
+     */
+    String format(int style, String text) {
+        if (!isPlainInteger(text) || isDateStyle(style)) {
+            return format(style, Double.parseDouble(text));
+        }
+        int length = text.length();
+        if (text.endsWith(".0")) {
+            // POI writes 12.0 for 12
+            length -= 2;
+        }
+        if (length <= 4 && text.charAt(0) != '-') {
+            int small = 0;
+            for (int i = 0; i < length; i++) {
+                small = small * 10 + text.charAt(i) - '0';
+            }
+            if (small < SMALL_NUMBERS.length) {
+                return SMALL_NUMBERS[small];
+            }
+        }
+        return length == text.length() ? text : text.substring(0, length);
+    }
+
+    /**
+     * Digits with an optional minus sign and {@code .0}, without leading zeros, not -0.
+     */
+    private static boolean isPlainInteger(String text) {
+        int length = text.endsWith(".0") ? text.length() - 2 : text.length();
+        int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+        if (digits < 1 || digits > MAX_EXACT_DIGITS) {
+            return false;
+        }
+        if (text.charAt(start) == '0' && (digits > 1 || start == 1)) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whole numbers without a fraction, others as {@link String#valueOf(double)}.
+     */
+    static String number(double value) {
+        if (value == (long) value) {
+            long whole = (long) value;
+            if (whole >= 0 && whole < SMALL_NUMBERS.length) {
+                return SMALL_NUMBERS[(int) whole];
+            }
+            return Long.toString(whole);
+        }
+        return String.valueOf(value);
+    }
+
+    private boolean isDate(int style, double value) {
+        return DateUtil.isValidExcelDate(value) && isDateStyle(style);
+    }
+
+    private boolean isDateStyle(int style) {
+        if (style < 0) {
+            return false;
+        }
+        if (style >= dateStyles.length) {
+            dateStyles = Arrays.copyOf(dateStyles, Math.max(style + 1, dateStyles.length * 2));
+        }
+        if (dateStyles[style] == 0) {
+            dateStyles[style] = (byte) (styles.isDateFormat(style) ? 1 : 2);
+        }
+        return dateStyles[style] == 1;
+    }
+
+    /**
+     * The date as Excel shows it, with the 1900 leap year bug and the 1904 date system like
+     * {@link DateUtil#getJavaDate(double, boolean)}, but without a time zone.
+     */
+    private String date(double value) {
+        long wholeDays = (long) Math.floor(value);
+        long millis = (long) ((value - wholeDays) * DAY_MILLIS + 0.5);
+        long dayAdjust = date1904 ? 1 : wholeDays < 61 ? 0 : -1;
+        long epochDay = (date1904 ? EPOCH_DAY_1904 : EPOCH_DAY_1900) + wholeDays + dayAdjust - 1 + millis / DAY_MILLIS;
+        millis %= DAY_MILLIS;
+
+        if (dateFormat != null) {
+            return dateFormat.format(LocalDateTime.of(LocalDate.ofEpochDay(epochDay), LocalTime.ofNanoOfDay(millis * 1_000_000)));
+        }
+
+        // Civil date from days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        int n = 0;
+        n = digits(year, 4, n);
+        chars[n++] = '-';
+        n = digits(month, 2, n);
+        chars[n++] = '-';
+        n = digits(day, 2, n);
+        if (millis != 0) {
+            int seconds = (int) (millis / 1000);
+            chars[n++] = 'T';
+            n = digits(seconds / 3600, 2, n);
+            chars[n++] = ':';
+            n = digits(seconds / 60 % 60, 2, n);
+            chars[n++] = ':';
+            n = digits(seconds % 60, 2, n);
+            if (millis % 1000 != 0) {
+                chars[n++] = '.';
+                n = digits((int) (millis % 1000), 3, n);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Writes the last {@code width} digits of a non-negative value, zero-padded, at {@code n}.
+     */
+    private int digits(int value, int width, int n) {
+        for (int i = n + width - 1; i >= n; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return n + width;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.excel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shared strings in memory-mapped temporary files, so only the pages in use take memory.
+ *
+ * The data file holds each string as its UTF-8 length and bytes; a string never crosses a
+ * 1 GB segment, so each segment is mapped on its own. The index file holds the offset of
+ * every string. Both files are deleted on close, or on exit where mapped files cannot be deleted.
+ */
+class DiskSharedStrings extends SharedStrings {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private DataOutputStream data;
+    private DataOutputStream index;
+    private long offset = 0;
+    private int size = 0;
+
+    private MappedByteBuffer[] segments;
+    private MappedByteBuffer offsets;
+
+    DiskSharedStrings() throws IOException {
+        dataFile = Files.createTempFile("csvmultitool-strings-", ".tmp");
+        indexFile = Files.createTempFile("csvmultitool-strings-", ".idx");
+        data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), 1 << 16));
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile), 1 << 16));
+    }
+
+    @Override
+    void add(String value) throws IOException {
+        if (size == Integer.MAX_VALUE / Long.BYTES) {
+            throw new IOException("Too many shared strings");
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long length = Integer.BYTES + bytes.length;
+        long segmentEnd = (offset | (SEGMENT_SIZE - 1)) + 1;
+        if (offset + length > segmentEnd) {
+            // Pad to the next segment
+            for (long i = offset; i < segmentEnd; i++) {
+                data.write(0);
+            }
+            offset = segmentEnd;
+        }
+
+        index.writeLong(offset);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        offset += length;
+        size++;
+    }
+
+    @Override
+    void finish() throws IOException {
+        data.close();
+        index.close();
+        data = null;
+        index = null;
+
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            offsets = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Shared string " + index + " does not exist, the table has " + size);
+        }
+        long start = offsets.getLong(index * Long.BYTES);
+        MappedByteBuffer segment = segments[(int) (start >>> SEGMENT_BITS)];
+        int position = (int) (start & (SEGMENT_SIZE - 1));
+        byte[] bytes = new byte[segment.getInt(position)];
+        segment.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (data != null) {
+            data.close();
+            index.close();
+        }
+        segments = null;
+        offsets = null;
+        delete(dataFile);
+        delete(indexFile);
+    }
+
+    private static void delete(Path file) {
+        // A mapped file cannot be deleted on every platform
+        if (!file.toFile().delete() && Files.exists(file)) {
+            file.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package org.example.excel;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.SharedValueRecordBase;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.TableRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.ptg.ExpPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.TblPtg;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.example.io.RecordWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts one sheet, or every sheet, of an Excel 97-2003 (.xls) file to CSV with the HSSF
+ * event API.
+ *
+ * Records are handled as {@link HSSFEventFactory} reads them, and only the current row is
+ * kept, so memory does not grow with the sheet. Reading stops at the end of the requested sheet.
+ * The workbook is read from the file instead of an input stream, so it is not loaded
+ * into memory either.
+ *
+ * Cells are written like the .xlsx conversion of {@code in2csv}: numbers and date formatted
+ * numbers through a {@link CellFormatter}, booleans as {@code true}/{@code false},
+ * formulas as their formula text and errors as empty values. Missing cells inside a row are
+ * written as empty values, rows without cells are left out.
+ *
+ * A cell of a shared or array formula only refers to the first cell of its range, and the
+ * range is defined by a record after the formula of that first cell. Such a cell is written
+ * once the records after it have been read: with the formula of its range, or with its
+ * cached result for data tables, which have no formula text.
+ */
+public class HssfCsvConverter extends AbortableHSSFListener {
+
+    // Results of abortableProcessRecord
+    private static final short CONTINUE = 0;
+    private static final short STOP = 1;
+
+    // Cached result types of a FORMULA record; POI 4.0 only maps them to CellType through deprecated methods
+    private static final int NUMERIC_RESULT = 0;
+    private static final int STRING_RESULT = 1;
+    private static final int BOOLEAN_RESULT = 4;
+
+    private final String sheet;
+    private final DateTimeFormatter dateFormat;
+    // Set when converting all sheets, each to its own output
+    private final SheetOutput output;
+    private RecordWriter csv;
+
+    // Workbook globals, complete before the first sheet starts
+    private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+    private BoundSheetRecord[] streamOrder;
+    private final List<ExtendedFormatRecord> styles = new ArrayList<>();
+    private final Map<Integer, String> formats = new HashMap<>();
+    private final SheetRecordCollectingListener formulaContext = new SheetRecordCollectingListener(record -> { });
+    private HSSFWorkbook formulaWorkbook;
+    private SSTRecord sharedStrings;
+    private boolean date1904 = false;
+    private CellFormatter formatter;
+
+    // Position in the record stream
+    private int depth = 0;
+    private int sheetIndex = -1;
+    private int targetIndex = -1;
+    private boolean found = false;
+
+    // Current row of the target sheet
+    private int row = -1;
+    private final RowBuffer cells = new RowBuffer();
+
+    // Shared, array and table formula ranges of the sheet by their first cell
+    private final Map<Long, SharedValueRecordBase> sharedValues = new HashMap<>();
+    // A formula referring to such a range, waiting for the records after it
+    private FormulaRecord pendingFormula;
+
+    private HssfCsvConverter(String sheet, DateTimeFormatter dateFormat, SheetOutput output, RecordWriter csv) {
+        this.sheet = sheet;
+        this.dateFormat = dateFormat;
+        this.output = output;
+        this.csv = csv;
+    }
+
+    /**
+     * Writes a sheet of an .xls file to {@code csv}.
+     *
+     * @param sheet      sheet name, 0-based index, or null for the first sheet
+     * @param dateFormat pattern for date cells, null for ISO-8601
+     * @return false if the workbook has no such sheet
+     */
+    public static boolean convert(File file, String sheet, DateTimeFormatter dateFormat, RecordWriter csv) throws IOException {
+        HssfCsvConverter converter = new HssfCsvConverter(sheet, dateFormat, null, csv);
+        converter.process(file);
+        converter.endRow();
+        return converter.found;
+    }
+
+    /**
+     * Writes every worksheet of an .xls file to its own output, in a single pass over the file.
+     * Each output is closed at the end of its sheet.
+     *
+     * @param dateFormat pattern for date cells, null for ISO-8601
+     */
+    public static void convertAll(File file, DateTimeFormatter dateFormat, SheetOutput output) throws IOException {
+        HssfCsvConverter converter = new HssfCsvConverter(null, dateFormat, output, null);
+        try {
+            converter.process(file);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (converter.csv != null) {
+                converter.csv.close();
+            }
+        }
+    }
+
+    private void process(File file) throws IOException {
+        try (POIFSFileSystem poifs = new POIFSFileSystem(file, true);
+             InputStream workbook = poifs.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(poifs.getRoot()))) {
+            HSSFRequest request = new HSSFRequest();
+            request.addListenerForAllRecords(this);
+            new HSSFEventFactory().abortableProcessEvents(request, workbook);
+        } catch (HSSFUserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public short abortableProcessRecord(Record record) {
+        if (sheetIndex < 0) {
+            formulaContext.processRecord(record);
+        }
+        if (pendingFormula != null && !(record instanceof SharedValueRecordBase)) {
+            resolvePendingFormula(record);
+        }
+
+        switch (record.getSid()) {
+            case BOFRecord.sid:
+                return startSubstream((BOFRecord) record);
+            case EOFRecord.sid:
+                depth--;
+                return found && depth == 0 ? endSheet() : CONTINUE;
+            case BoundSheetRecord.sid:
+                boundSheets.add((BoundSheetRecord) record);
+                break;
+            case SSTRecord.sid:
+                sharedStrings = (SSTRecord) record;
+                break;
+            case ExtendedFormatRecord.sid:
+                styles.add((ExtendedFormatRecord) record);
+                break;
+            case FormatRecord.sid:
+                FormatRecord format = (FormatRecord) record;
+                formats.put(format.getIndexCode(), format.getFormatString());
+                break;
+            case DateWindow1904Record.sid:
+                date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+                break;
+            case SharedFormulaRecord.sid:
+            case ArrayRecord.sid:
+            case TableRecord.sid:
+                if (found && depth == 1) {
+                    SharedValueRecordBase range = (SharedValueRecordBase) record;
+                    sharedValues.put(cellKey(range.getFirstRow(), range.getFirstColumn()), range);
+                }
+                break;
+            default:
+                if (found && depth == 1 && record instanceof CellValueRecordInterface) {
+                    cell((CellValueRecordInterface) record);
+                }
+                break;
+        }
+        return CONTINUE;
+    }
+
+    private short startSubstream(BOFRecord bof) {
+        depth++;
+        if (depth > 1 || bof.getType() == BOFRecord.TYPE_WORKBOOK) {
+            // Globals, or a chart embedded in a sheet
+            return CONTINUE;
+        }
+
+        sheetIndex++;
+        row = -1;
+        sharedValues.clear();
+        if (sheetIndex == 0) {
+            formatter = new CellFormatter(dateFormat, date1904, this::isDateFormat);
+        }
+        if (output != null) {
+            if (bof.getType() == BOFRecord.TYPE_WORKSHEET) {
+                startOutput();
+            }
+            return CONTINUE;
+        }
+
+        if (sheetIndex == 0) {
+            targetIndex = findTarget();
+            if (targetIndex < 0) {
+                return STOP;
+            }
+        }
+        found = sheetIndex == targetIndex;
+        return CONTINUE;
+    }
+
+    private void startOutput() {
+        if (streamOrder == null) {
+            streamOrder = BoundSheetRecord.orderByBofPosition(boundSheets);
+        }
+        BoundSheetRecord boundSheet = streamOrder[sheetIndex];
+        try {
+            csv = output.open(boundSheets.indexOf(boundSheet), boundSheet.getSheetname());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        found = true;
+    }
+
+    private short endSheet() {
+        endRow();
+        if (output == null) {
+            return STOP;
+        }
+        try {
+            csv.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        csv = null;
+        found = false;
+        return CONTINUE;
+    }
+
+    /**
+     * Position of the requested sheet in the record stream, which is the order of the sheet
+     * offsets rather than the workbook order. -1 if there is no such sheet.
+     */
+    private int findTarget() {
+        BoundSheetRecord target = null;
+        if (sheet == null) {
+            target = boundSheets.isEmpty() ? null : boundSheets.get(0);
+        } else {
+            try {
+                int index = Integer.parseInt(sheet);
+                if (index >= 0 && index < boundSheets.size()) {
+                    target = boundSheets.get(index);
+                }
+            } catch (NumberFormatException e) {
+                for (BoundSheetRecord boundSheet : boundSheets) {
+                    if (boundSheet.getSheetname().equals(sheet)) {
+                        target = boundSheet;
+                        break;
+                    }
+                }
+            }
+        }
+
+        BoundSheetRecord[] streamOrder = BoundSheetRecord.orderByBofPosition(boundSheets);
+        for (int i = 0; i < streamOrder.length; i++) {
+            if (streamOrder[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void cell(CellValueRecordInterface cell) {
+        if (cell.getRow() != row) {
+            endRow();
+            row = cell.getRow();
+        }
+
+        cells.set(cell.getColumn(), value(cell));
+    }
+
+    private String value(CellValueRecordInterface cell) {
+        if (cell instanceof LabelSSTRecord) {
+            return sharedStrings.getString(((LabelSSTRecord) cell).getSSTIndex()).getString();
+        }
+        if (cell instanceof NumberRecord) {
+            return formatter.format(cell.getXFIndex(), ((NumberRecord) cell).getValue());
+        }
+        if (cell instanceof LabelRecord) {
+            return ((LabelRecord) cell).getValue();
+        }
+        if (cell instanceof BoolErrRecord) {
+            BoolErrRecord boolErr = (BoolErrRecord) cell;
+            return boolErr.isBoolean() ? String.valueOf(boolErr.getBooleanValue()) : "";
+        }
+        if (cell instanceof FormulaRecord) {
+            FormulaRecord formula = (FormulaRecord) cell;
+            Ptg[] tokens = formula.getParsedExpression();
+            if (tokens.length == 1 && (tokens[0] instanceof ExpPtg || tokens[0] instanceof TblPtg)) {
+                pendingFormula = formula;
+                return "";
+            }
+            return formulaText(tokens);
+        }
+        return "";
+    }
+
+    private String formulaText(Ptg[] tokens) {
+        if (formulaWorkbook == null) {
+            formulaWorkbook = formulaContext.getStubHSSFWorkbook();
+        }
+        return HSSFFormulaParser.toFormulaString(formulaWorkbook, tokens);
+    }
+
+    /**
+     * Writes the pending formula cell, now that its range is known.
+     *
+     * @param next the record after the formula and its range records, holding the cached
+     *             result if that is a string
+     */
+    private void resolvePendingFormula(Record next) {
+        FormulaRecord formula = pendingFormula;
+        pendingFormula = null;
+        cells.set(formula.getColumn(), sharedFormula(formula, next));
+    }
+
+    private String sharedFormula(FormulaRecord formula, Record next) {
+        Ptg token = formula.getParsedExpression()[0];
+        if (token instanceof ExpPtg) {
+            ExpPtg firstCell = (ExpPtg) token;
+            SharedValueRecordBase range = sharedValues.get(cellKey(firstCell.getRow(), firstCell.getColumn()));
+            if (range instanceof SharedFormulaRecord) {
+                // References relative to the first cell are moved to this cell
+                return formulaText(((SharedFormulaRecord) range).getFormulaTokens(formula));
+            }
+            if (range instanceof ArrayRecord) {
+                return formulaText(((ArrayRecord) range).getFormulaTokens());
+            }
+        }
+        switch (formula.getCachedResultType()) {
+            case NUMERIC_RESULT:
+                return formatter.format(formula.getXFIndex(), formula.getValue());
+            case BOOLEAN_RESULT:
+                return String.valueOf(formula.getCachedBooleanValue());
+            case STRING_RESULT:
+                return next instanceof StringRecord ? ((StringRecord) next).getString() : "";
+            default:
+                return "";
+        }
+    }
+
+    private static long cellKey(int row, int column) {
+        return (long) row << 16 | column;
+    }
+
+    private boolean isDateFormat(int style) {
+        if (style >= styles.size()) {
+            return false;
+        }
+        int formatIndex = styles.get(style).getFormatIndex();
+        String format = formats.get(formatIndex);
+        if (format == null) {
+            format = BuiltinFormats.getBuiltinFormat(formatIndex);
+        }
+        return DateUtil.isADateFormat(formatIndex, format);
+    }
+
+    private void endRow() {
+        if (!cells.isEmpty()) {
+            cells.writeTo(csv);
+        }
+    }
+}
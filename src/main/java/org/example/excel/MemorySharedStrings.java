@@ -0,0 +1,43 @@
+package org.example.excel;
+
+import java.util.Arrays;
+
+/**
+ * Shared strings in an array on the heap.
+ */
+class MemorySharedStrings extends SharedStrings {
+
+    // Do not trust huge announced counts for the initial array
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
+
+    private String[] values = new String[16];
+    private int size = 0;
+
+    @Override
+    void expect(int count) {
+        if (count > values.length) {
+            values = Arrays.copyOf(values, Math.min(count, MAX_INITIAL_CAPACITY));
+        }
+    }
+
+    @Override
+    void add(String value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Shared string " + index + " does not exist, the table has " + size);
+        }
+        return values[index];
+    }
+}
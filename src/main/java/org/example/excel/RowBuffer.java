@@ -0,0 +1,39 @@
+package org.example.excel;
+
+import org.example.io.RecordWriter;
+
+import java.util.Arrays;
+
+/**
+ * Cell values of the spreadsheet row being converted, by column. Columns without a cell
+ * are written as empty values.
+ */
+final class RowBuffer {
+
+    private String[] cells = new String[16];
+    private int width = 0;
+
+    void set(int column, String value) {
+        if (column >= cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+        }
+        cells[column] = value;
+        width = Math.max(width, column + 1);
+    }
+
+    boolean isEmpty() {
+        return width == 0;
+    }
+
+    /**
+     * Writes the row as one record and clears it.
+     */
+    void writeTo(RecordWriter out) {
+        for (int i = 0; i < width; i++) {
+            out.writeField(cells[i] == null ? "" : cells[i]);
+        }
+        out.endRecord();
+        Arrays.fill(cells, 0, width, null);
+        width = 0;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.excel;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The shared strings table of an .xlsx workbook, which string cells refer to by index.
+ *
+ * The table is either held in memory or written to a memory-mapped temporary file, for
+ * workbooks whose strings do not fit in the heap. Lookups may come from several threads.
+ */
+public abstract class SharedStrings implements Closeable {
+
+    /**
+     * Reads the {@code sharedStrings.xml} part; rich text runs are joined, phonetic hints are left out.
+     *
+     * @param onDisk whether to keep the strings in a temporary file instead of the heap
+     */
+    public static SharedStrings read(InputStream xml, boolean onDisk) throws IOException {
+        SharedStrings strings = onDisk ? new DiskSharedStrings() : new MemorySharedStrings();
+        try {
+            strings.parse(Xml.open(xml));
+            strings.finish();
+        } catch (XMLStreamException e) {
+            strings.close();
+            throw new IOException("Invalid shared strings: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            strings.close();
+            throw e;
+        }
+        return strings;
+    }
+
+    /**
+     * A table without strings, for workbooks without a shared strings part.
+     */
+    public static SharedStrings empty() {
+        return new MemorySharedStrings();
+    }
+
+    private void parse(XMLStreamReader reader) throws XMLStreamException, IOException {
+        StringBuilder text = new StringBuilder();
+        int phoneticDepth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("si")) {
+                    text.setLength(0);
+                } else if (name.equals("rPh")) {
+                    phoneticDepth++;
+                } else if (name.equals("t") && phoneticDepth == 0) {
+                    text.append(reader.getElementText());
+                } else if (name.equals("sst")) {
+                    String count = Xml.attribute(reader, "uniqueCount");
+                    if (count != null) {
+                        expect(Integer.parseInt(count));
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("si")) {
+                    add(Xml.unescape(text.toString()));
+                } else if (name.equals("rPh")) {
+                    phoneticDepth--;
+                }
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * Number of strings announced by the table, a hint for sizing.
+     */
+    void expect(int count) {
+    }
+
+    abstract void add(String value) throws IOException;
+
+    void finish() throws IOException {
+    }
+
+    /**
+     * Number of strings in the table.
+     */
+    public abstract int size();
+
+    /**
+     * String at a 0-based index.
+     */
+    public abstract String get(int index);
+
+    @Override
+    public void close() throws IOException {
+    }
+}
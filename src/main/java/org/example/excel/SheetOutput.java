@@ -0,0 +1,17 @@
+package org.example.excel;
+
+import org.example.io.RecordWriter;
+
+import java.io.IOException;
+
+/**
+ * Opens the output of each sheet when all sheets of a workbook are converted.
+ */
+@FunctionalInterface
+public interface SheetOutput {
+
+    /**
+     * @param index 0-based position of the sheet in the workbook
+     */
+    RecordWriter open(int index, String name) throws IOException;
+}
@@ -0,0 +1,335 @@
+package org.example.excel;
+
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.OperandPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.io.RecordWriter;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts one sheet of an .xlsx file to CSV by pulling the sheet XML through StAX.
+ *
+ * Cell values go straight from the parser into a {@link RowBuffer}; no row or cell objects
+ * are created and only the current row is kept. Shared strings and styles come from the
+ * {@link XlsxWorkbook}, which reads them once for all sheets.
+ *
+ * Numbers and date formatted numbers are written through a {@link CellFormatter}, booleans
+ * as {@code true}/{@code false}, formulas as their formula text and errors as empty values.
+ * A cell of a shared formula, which only names the formula of the first cell of its range,
+ * is written with that formula moved to the cell, like the .xls conversion does; if the
+ * formula cannot be parsed without the workbook, e.g. because it uses a defined name, the
+ * cell's cached result is written instead. Missing cells inside a row are written as empty
+ * values. Unlike the .xls conversion, which only sees cells, rows without cells are written
+ * as empty records.
+ */
+public class XlsxCsvConverter {
+
+    private final SharedStrings strings;
+    private final StylesTable styles;
+    private final CellFormatter formatter;
+    private final RecordWriter csv;
+
+    // Current cell
+    private int column;
+    private String type;
+    private int style;
+    private String value;
+    private String formula;
+    private final StringBuilder inline = new StringBuilder();
+    private int phoneticDepth;
+
+    private final RowBuffer cells = new RowBuffer();
+    private int row = -1;
+
+    // Shared formulas of the sheet by their index, parsed when another cell uses them
+    private final Map<String, SharedFormulaMaster> sharedFormulas = new HashMap<>();
+    private XSSFEvaluationWorkbook formulaWorkbook;
+
+    XlsxCsvConverter(SharedStrings strings, StylesTable styles, boolean date1904, DateTimeFormatter dateFormat, RecordWriter csv) {
+        this.strings = strings;
+        this.styles = styles;
+        this.formatter = new CellFormatter(dateFormat, date1904, this::isDateFormat);
+        this.csv = csv;
+    }
+
+    /**
+     * Writes a sheet of an .xlsx file to {@code csv}.
+     *
+     * @param sheet                sheet name, 0-based index, or null for the first sheet
+     * @param sharedStringsOnDisk  whether to keep the shared strings in a temporary file instead of the heap
+     * @param dateFormat           pattern for date cells, null for ISO-8601
+     * @return false if the workbook has no such sheet
+     */
+    public static boolean convert(File file, String sheet, boolean sharedStringsOnDisk, DateTimeFormatter dateFormat,
+                                  RecordWriter csv) throws IOException {
+        try (XlsxWorkbook workbook = XlsxWorkbook.open(file, sharedStringsOnDisk, dateFormat)) {
+            int index = workbook.findSheet(sheet);
+            if (index < 0) {
+                return false;
+            }
+            workbook.convert(index, csv);
+            return true;
+        }
+    }
+
+    void convert(InputStream sheetData) throws IOException {
+        try {
+            convertSheet(Xml.open(sheetData));
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid sheet XML: " + e.getMessage(), e);
+        }
+    }
+
+    private void convertSheet(XMLStreamReader xml) throws XMLStreamException {
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "row":
+                        startRow(xml);
+                        break;
+                    case "c":
+                        startCell(xml);
+                        break;
+                    case "v":
+                        value = xml.getElementText();
+                        break;
+                    case "f":
+                        readFormula(xml);
+                        break;
+                    case "rPh":
+                        phoneticDepth++;
+                        break;
+                    case "t":
+                        if (phoneticDepth == 0) {
+                            inline.append(xml.getElementText());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "c":
+                        cells.set(column, cellValue());
+                        break;
+                    case "row":
+                        cells.writeTo(csv);
+                        break;
+                    case "rPh":
+                        phoneticDepth--;
+                        break;
+                    case "sheetData":
+                        // The rest of the sheet has no cells
+                        xml.close();
+                        return;
+                    default:
+                        break;
+                }
+            }
+        }
+        xml.close();
+    }
+
+    private void startRow(XMLStreamReader xml) {
+        String reference = Xml.attribute(xml, "r");
+        row = reference == null ? row + 1 : Integer.parseInt(reference) - 1;
+        column = -1;
+    }
+
+    private void startCell(XMLStreamReader xml) {
+        String reference = null;
+        type = null;
+        style = styles == null || styles.getNumCellStyles() == 0 ? -1 : 0;
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            switch (xml.getAttributeLocalName(i)) {
+                case "r":
+                    reference = xml.getAttributeValue(i);
+                    break;
+                case "t":
+                    type = xml.getAttributeValue(i);
+                    break;
+                case "s":
+                    style = Integer.parseInt(xml.getAttributeValue(i));
+                    break;
+                default:
+                    break;
+            }
+        }
+        column = reference == null ? column + 1 : column(reference);
+        value = null;
+        formula = null;
+        inline.setLength(0);
+    }
+
+    /**
+     * 0-based column of a cell reference like {@code AB12}.
+     */
+    private static int column(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * Reads the formula of the current cell. The first cell of a shared formula holds its
+     * text, the other cells only its index.
+     */
+    private void readFormula(XMLStreamReader xml) throws XMLStreamException {
+        String formulaType = Xml.attribute(xml, "t");
+        String sharedIndex = Xml.attribute(xml, "si");
+        formula = xml.getElementText();
+        if (!"shared".equals(formulaType) || sharedIndex == null) {
+            return;
+        }
+        if (!formula.isEmpty()) {
+            sharedFormulas.put(sharedIndex, new SharedFormulaMaster(formula, row, column));
+            return;
+        }
+        SharedFormulaMaster master = sharedFormulas.get(sharedIndex);
+        // Without its formula the cached result is written
+        formula = master == null ? null : master.formulaAt(row, column);
+    }
+
+    private String cellValue() {
+        if (formula != null) {
+            return formula;
+        }
+        if ("inlineStr".equals(type)) {
+            return Xml.unescape(inline.toString());
+        }
+        if (value == null || "e".equals(type)) {
+            return "";
+        }
+        if (type == null || type.equals("n")) {
+            return formatter.format(style, value);
+        }
+        switch (type) {
+            case "s":
+                return strings.get(Integer.parseInt(value.trim()));
+            case "b":
+                return String.valueOf("1".equals(value) || "true".equals(value));
+            default:
+                return value;
+        }
+    }
+
+    private boolean isDateFormat(int style) {
+        if (style >= styles.getNumCellStyles()) {
+            return false;
+        }
+        XSSFCellStyle cellStyle = styles.getStyleAt(style);
+        return cellStyle != null && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+    }
+
+    /**
+     * Moves the relative references of a shared formula by the offset of a cell from its
+     * first cell. POI's SharedFormula does the same, but drops the sheet of 3D references.
+     */
+    private static Ptg[] move(Ptg[] tokens, int rows, int columns) {
+        Ptg[] moved = new Ptg[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            Ptg token = tokens[i];
+            if (token instanceof RefPtgBase) {
+                RefPtgBase reference = (RefPtgBase) ((OperandPtg) token).copy();
+                if (reference.isRowRelative()) {
+                    reference.setRow(moveRow(reference.getRow(), rows));
+                }
+                if (reference.isColRelative()) {
+                    reference.setColumn(moveColumn(reference.getColumn(), columns));
+                }
+                token = reference;
+            } else if (token instanceof AreaPtgBase) {
+                AreaPtgBase area = (AreaPtgBase) ((OperandPtg) token).copy();
+                if (area.isFirstRowRelative()) {
+                    area.setFirstRow(moveRow(area.getFirstRow(), rows));
+                }
+                if (area.isLastRowRelative()) {
+                    area.setLastRow(moveRow(area.getLastRow(), rows));
+                }
+                if (area.isFirstColRelative()) {
+                    area.setFirstColumn(moveColumn(area.getFirstColumn(), columns));
+                }
+                if (area.isLastColRelative()) {
+                    area.setLastColumn(moveColumn(area.getLastColumn(), columns));
+                }
+                token = area;
+            }
+            moved[i] = token;
+        }
+        return moved;
+    }
+
+    // References wrap around at the edges of the sheet, as in Excel
+    private static int moveRow(int row, int rows) {
+        return (row + rows) & 0xFFFFF;
+    }
+
+    private static int moveColumn(int column, int columns) {
+        return (column + columns) & 0x3FFF;
+    }
+
+    /**
+     * The first cell of a shared formula.
+     */
+    private final class SharedFormulaMaster {
+        private final String text;
+        private final int row;
+        private final int column;
+        private Ptg[] tokens;
+        private boolean unparsable;
+
+        SharedFormulaMaster(String text, int row, int column) {
+            this.text = text;
+            this.row = row;
+            this.column = column;
+        }
+
+        /**
+         * The formula with its relative references moved from the first cell to the given
+         * one, null if it cannot be parsed.
+         */
+        String formulaAt(int cellRow, int cellColumn) {
+            if (unparsable) {
+                return null;
+            }
+            if (formulaWorkbook == null) {
+                formulaWorkbook = XSSFEvaluationWorkbook.create(new XSSFWorkbook());
+            }
+            try {
+                if (tokens == null) {
+                    tokens = FormulaParser.parse(text, formulaWorkbook, FormulaType.CELL, -1, row);
+                }
+                return FormulaRenderer.toFormulaString(formulaWorkbook, move(tokens, cellRow - row, cellColumn - column));
+            } catch (FormulaParseException e) {
+                unparsable = true;
+                return null;
+            }
+        }
+    }
+}
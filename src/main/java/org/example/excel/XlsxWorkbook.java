@@ -0,0 +1,207 @@
+package org.example.excel;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.example.io.RecordWriter;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An open .xlsx file whose sheets can be converted to CSV, one at a time or several at once
+ * from different threads.
+ *
+ * Opening reads only {@code workbook.xml} and its relationships, which map every sheet name
+ * to its part, so no sheet is opened before it is converted and listing the sheets reads
+ * nothing else. The shared strings and styles are read at the first conversion and shared
+ * by all conversions.
+ */
+public class XlsxWorkbook implements Closeable {
+
+    // Namespace of the r:id of a sheet in workbook.xml
+    private static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private final OPCPackage pkg;
+    private final boolean sharedStringsOnDisk;
+    private final DateTimeFormatter dateFormat;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<PackagePart> sheetParts = new ArrayList<>();
+    private boolean date1904;
+
+    // Read by the first conversion
+    private StylesTable styles;
+    private SharedStrings strings;
+
+    private XlsxWorkbook(OPCPackage pkg, boolean sharedStringsOnDisk, DateTimeFormatter dateFormat) {
+        this.pkg = pkg;
+        this.sharedStringsOnDisk = sharedStringsOnDisk;
+        this.dateFormat = dateFormat;
+    }
+
+    /**
+     * @param sharedStringsOnDisk whether to keep the shared strings in a temporary file instead of the heap
+     * @param dateFormat          pattern for date cells, null for ISO-8601
+     */
+    public static XlsxWorkbook open(File file, boolean sharedStringsOnDisk, DateTimeFormatter dateFormat) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        XlsxWorkbook workbook = new XlsxWorkbook(pkg, sharedStringsOnDisk, dateFormat);
+        try {
+            workbook.readWorkbook();
+        } catch (OpenXML4JException | XMLStreamException e) {
+            workbook.close();
+            throw new IOException(e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            workbook.close();
+            throw e;
+        }
+        return workbook;
+    }
+
+    /**
+     * Reads the date system and the sheets from {@code workbook.xml}, up to the end of the
+     * sheet list.
+     */
+    private void readWorkbook() throws IOException, OpenXML4JException, XMLStreamException {
+        PackageRelationship document = pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT).getRelationship(0);
+        if (document == null) {
+            throw new IOException("No workbook part found, strict OOXML files are not supported");
+        }
+        PackagePart workbookPart = pkg.getPart(document);
+        try (InputStream in = workbookPart.getInputStream()) {
+            XMLStreamReader xml = Xml.open(in);
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("sheets")) {
+                    break;
+                }
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (xml.getLocalName().equals("workbookPr")) {
+                    String value = Xml.attribute(xml, "date1904");
+                    date1904 = "1".equals(value) || "true".equals(value);
+                } else if (xml.getLocalName().equals("sheet")) {
+                    addSheet(workbookPart, Xml.attribute(xml, "name"), xml.getAttributeValue(RELATIONSHIPS_NAMESPACE, "id"));
+                }
+            }
+            xml.close();
+        }
+    }
+
+    private void addSheet(PackagePart workbookPart, String name, String relationshipId) throws OpenXML4JException {
+        PackageRelationship relationship = relationshipId == null ? null : workbookPart.getRelationship(relationshipId);
+        if (relationship == null) {
+            return;
+        }
+        // Like XSSFReader, only worksheets and chart sheets; others such as dialog sheets are left out
+        String type = relationship.getRelationshipType();
+        if (!type.equals(XSSFRelation.WORKSHEET.getRelation()) && !type.equals(XSSFRelation.CHARTSHEET.getRelation())) {
+            return;
+        }
+        sheetNames.add(name);
+        sheetParts.add(workbookPart.getRelatedPart(relationship));
+    }
+
+    /**
+     * Reads the styles and shared strings, once for all conversions.
+     */
+    private synchronized void readCellData() throws IOException {
+        if (strings != null) {
+            return;
+        }
+        List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.STYLES.getContentType());
+        styles = parts.isEmpty() ? null : new StylesTable(parts.get(0));
+        strings = readSharedStrings();
+    }
+
+    private SharedStrings readSharedStrings() throws IOException {
+        List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        if (parts.isEmpty()) {
+            return SharedStrings.empty();
+        }
+        try (InputStream in = parts.get(0).getInputStream()) {
+            return SharedStrings.read(in, sharedStringsOnDisk);
+        }
+    }
+
+    /**
+     * Sheet names in workbook order.
+     */
+    public List<String> getSheetNames() {
+        return Collections.unmodifiableList(sheetNames);
+    }
+
+    /**
+     * Index of a sheet given like {@code in2csv -s}: a name, a 0-based index, or null for the
+     * first sheet. -1 if there is no such sheet.
+     */
+    public int findSheet(String sheet) {
+        if (sheet == null) {
+            return sheetNames.isEmpty() ? -1 : 0;
+        }
+        try {
+            int index = Integer.parseInt(sheet);
+            return index >= 0 && index < sheetNames.size() ? index : -1;
+        } catch (NumberFormatException e) {
+            return sheetNames.indexOf(sheet);
+        }
+    }
+
+    /**
+     * Part of the sheet at {@code index}, for readers other than {@link #convert}.
+     */
+    public PackagePart getSheetPart(int index) {
+        return sheetParts.get(index);
+    }
+
+    /**
+     * Whether dates count from 1904 instead of 1900.
+     */
+    public boolean isDate1904() {
+        return date1904;
+    }
+
+    /**
+     * Writes the sheet at {@code index} to {@code csv}. Different sheets may be converted
+     * concurrently.
+     */
+    public void convert(int index, RecordWriter csv) throws IOException {
+        readCellData();
+        try (InputStream in = sheetParts.get(index).getInputStream()) {
+            new XlsxCsvConverter(strings, styles, date1904, dateFormat, csv).convert(in);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (strings != null) {
+                strings.close();
+            }
+        } finally {
+            // Read-only, nothing to save
+            pkg.revert();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.excel;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * StAX reading of the XML parts of .xlsx files.
+ */
+final class Xml {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private Xml() {
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        // Text of an element comes as one event
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    static XMLStreamReader open(InputStream in) throws IOException {
+        try {
+            return FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Attribute of the current start element by local name, null if it is not set.
+     */
+    static String attribute(XMLStreamReader reader, String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (reader.getAttributeLocalName(i).equals(name)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the {@code _xHHHH_} escapes Excel writes for characters XML cannot hold,
+     * as {@link org.apache.poi.xssf.usermodel.XSSFRichTextString} does.
+     */
+    static String unescape(String text) {
+        int start = text.indexOf("_x");
+        if (start < 0) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(text.length());
+        int copied = 0;
+        for (int i = start; i >= 0 && i + 7 <= text.length(); i = text.indexOf("_x", i + 1)) {
+            if (text.charAt(i + 6) != '_' || !isHex(text, i + 2, i + 6)) {
+                continue;
+            }
+            out.append(text, copied, i).append((char) Integer.parseInt(text.substring(i + 2, i + 6), 16));
+            copied = i + 7;
+            i += 6;
+        }
+        return out.append(text, copied, text.length()).toString();
+    }
+
+    private static boolean isHex(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.io;
+
+/**
+ * Parses human readable byte sizes such as {@code 65536}, {@code 256K}, {@code 512M} or {@code 2G}.
+ */
+public final class ByteSize {
+
+    private ByteSize() {
+    }
+
+    public static long parse(String text) {
+        String value = text.trim().toUpperCase();
+        long multiplier = 1;
+        if (value.endsWith("K")) {
+            multiplier = 1024L;
+        } else if (value.endsWith("M")) {
+            multiplier = 1024L * 1024;
+        } else if (value.endsWith("G")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier != 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        try {
+            long size = Long.parseLong(value) * multiplier;
+            if (size <= 0) {
+                throw new IllegalArgumentException("Invalid size: " + text);
+            }
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + text);
+        }
+    }
+}
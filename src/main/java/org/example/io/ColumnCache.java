@@ -0,0 +1,532 @@
+package org.example.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column cache of a CSV file: a sidecar file next to it ({@code data.csv.colcache}) with the
+ * parsed records stored column by column, so that reading the file again needs no parsing.
+ *
+ * Every column is stored in one of three forms, tried in this order: numbers, for columns
+ * whose values are all empty or plain decimals of up to 18 digits, as unscaled value and
+ * scale; a dictionary of at most 65536 distinct values with a 1 or 2 byte code per record;
+ * or UTF-8 text with an offset per record. Each column is a section of at most 2 GB that
+ * is memory-mapped when the cache is read.
+ *
+ * The cache holds the size and modification time of the file and the encoding it was read
+ * with, and is only used while all three match. Only files whose records all have as many
+ * fields as the header can be cached.
+ */
+public final class ColumnCache {
+
+    private static final String SUFFIX = ".colcache";
+    private static final byte[] MAGIC = "CSVCOLS1".getBytes(StandardCharsets.US_ASCII);
+
+    // Column forms
+    static final byte NUMBER = 1;
+    static final byte DICTIONARY = 2;
+    static final byte TEXT = 3;
+
+    static final int MAX_DICTIONARY = 1 << 16;
+    // Scale of empty values in number columns
+    static final byte EMPTY = -1;
+    private static final int MAX_DIGITS = 18;
+
+    private static final int WRITE_BUFFER = 1 << 13;
+
+    private ColumnCache() {
+    }
+
+    /**
+     * Opens the records of a file.
+     */
+    public interface Records {
+        RecordReader open() throws IOException;
+    }
+
+    public static File sidecar(File source) {
+        return new File(source.getPath() + SUFFIX);
+    }
+
+    /**
+     * True if the file has a cache written from its current content in {@code charset}.
+     */
+    public static boolean isFresh(File source, Charset charset) {
+        File cache = sidecar(source);
+        if (!cache.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache), 256))) {
+            return readStamp(in, source, charset);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The records of a file from its cache, or null if it has no fresh cache.
+     */
+    public static RecordReader open(File source, Charset charset) throws IOException {
+        File cache = sidecar(source);
+        if (!cache.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (!readStamp(in, source, charset)) {
+                return null;
+            }
+            long rowCount = in.readLong();
+            int columnCount = in.readInt();
+            String[] names = new String[columnCount];
+            ColumnCacheReader.Column[] columns = new ColumnCacheReader.Column[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = readString(in);
+                byte type = in.readByte();
+                long offset = in.readLong();
+                long length = in.readLong();
+                ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                columns[i] = ColumnCacheReader.column(type, section, rowCount);
+            }
+            return new ColumnCacheReader(Headers.of(names), rowCount, columns);
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new IOException("Invalid column cache " + cache + ", write it again: " + e.getMessage());
+        }
+    }
+
+    private static boolean readStamp(DataInputStream in, File source, Charset charset) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a column cache: " + sidecar(source));
+        }
+        return in.readLong() == source.length()
+                && in.readLong() == source.lastModified()
+                && in.readUTF().equals(charset.name());
+    }
+
+    /**
+     * Writes the cache of a file in two passes over its records: the first chooses the form
+     * of each column, the second writes the columns, each through its own buffer at its
+     * place in the cache. The cache replaces an existing one only when it is complete.
+     *
+     * @param records the records of {@code source} read with {@code charset}, parsed
+     */
+    public static void write(File source, Charset charset, Records records) throws IOException {
+        long length = source.length();
+        long modified = source.lastModified();
+
+        List<String> names;
+        ColumnPlan[] plans;
+        long rowCount = 0;
+        try (RecordReader reader = records.open()) {
+            names = new ArrayList<>(headerNames(reader));
+            plans = new ColumnPlan[names.size()];
+            for (int i = 0; i < plans.length; i++) {
+                plans[i] = new ColumnPlan();
+            }
+            while (reader.next()) {
+                rowCount++;
+                checkSize(reader, plans.length, rowCount);
+                for (int i = 0; i < plans.length; i++) {
+                    plans[i].add(reader.get(i));
+                }
+            }
+        }
+
+        // Header, then the sections in column order
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.write(MAGIC);
+        out.writeLong(length);
+        out.writeLong(modified);
+        out.writeUTF(charset.name());
+        out.writeLong(rowCount);
+        out.writeInt(plans.length);
+        long offset = MAGIC.length + 8 + 8 + 2 + charset.name().length() + 8 + 4;
+        for (int i = 0; i < plans.length; i++) {
+            offset += 4 + names.get(i).getBytes(StandardCharsets.UTF_8).length + 1 + 8 + 8;
+        }
+        for (int i = 0; i < plans.length; i++) {
+            ColumnPlan plan = plans[i];
+            plan.choose(rowCount, names.get(i));
+            plan.offset = offset;
+            writeString(out, names.get(i));
+            out.writeByte(plan.type);
+            out.writeLong(plan.offset);
+            out.writeLong(plan.length);
+            offset += plan.length;
+        }
+        out.flush();
+
+        File cache = sidecar(source);
+        File temp = new File(cache.getPath() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(channel, ByteBuffer.wrap(header.toByteArray()), 0);
+                writeColumns(channel, plans, rowCount, records);
+            }
+            if (source.length() != length || source.lastModified() != modified) {
+                throw new IOException("File changed while it was cached: " + source);
+            }
+            try {
+                Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static List<String> headerNames(RecordReader reader) {
+        // Duplicate names keep their place, like the header the file is read with
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> headerMap = reader.getHeaderMap();
+        String[] byIndex = new String[headerMap.isEmpty() ? 0 : Collections.max(headerMap.values()) + 1];
+        for (Map.Entry<String, Integer> entry : headerMap.entrySet()) {
+            byIndex[entry.getValue()] = entry.getKey();
+        }
+        for (String name : byIndex) {
+            if (name == null) {
+                throw new IllegalArgumentException("Files with duplicate column names cannot be cached");
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static void checkSize(RecordReader reader, int columnCount, long record) throws IOException {
+        if (reader.size() != columnCount) {
+            throw new IOException("Record " + record + " has " + reader.size() + " fields but the header has "
+                    + columnCount + ", only files whose records all have as many fields as the header can be cached");
+        }
+    }
+
+    private static void writeColumns(FileChannel channel, ColumnPlan[] plans, long rowCount, Records records) throws IOException {
+        SectionWriter[] first = new SectionWriter[plans.length];
+        SectionWriter[] second = new SectionWriter[plans.length];
+        for (int i = 0; i < plans.length; i++) {
+            ColumnPlan plan = plans[i];
+            switch (plan.type) {
+                case NUMBER:
+                    first[i] = new SectionWriter(channel, plan.offset);
+                    second[i] = new SectionWriter(channel, plan.offset + rowCount * 8);
+                    break;
+                case DICTIONARY:
+                    SectionWriter dictionary = new SectionWriter(channel, plan.offset);
+                    dictionary.putInt(plan.values.size());
+                    int end = 0;
+                    dictionary.putInt(end);
+                    for (byte[] value : plan.values) {
+                        end += value.length;
+                        dictionary.putInt(end);
+                    }
+                    for (byte[] value : plan.values) {
+                        dictionary.put(value);
+                    }
+                    dictionary.flush();
+                    first[i] = new SectionWriter(channel, dictionary.position());
+                    break;
+                default:
+                    first[i] = new SectionWriter(channel, plan.offset);
+                    first[i].putInt(0);
+                    second[i] = new SectionWriter(channel, plan.offset + (rowCount + 1) * 4);
+                    break;
+            }
+        }
+
+        long row = 0;
+        try (RecordReader reader = records.open()) {
+            while (reader.next()) {
+                row++;
+                checkSize(reader, plans.length, row);
+                if (row > rowCount) {
+                    break;
+                }
+                for (int i = 0; i < plans.length; i++) {
+                    plans[i].write(reader.get(i), first[i], second[i]);
+                }
+            }
+        }
+        if (row != rowCount) {
+            throw new IOException("File changed while it was cached");
+        }
+        for (int i = 0; i < plans.length; i++) {
+            first[i].flush();
+            if (second[i] != null) {
+                second[i].flush();
+            }
+        }
+    }
+
+    /**
+     * Form and size of one column, decided from all its values.
+     */
+    private static final class ColumnPlan {
+
+        private boolean numbers = true;
+        private Map<String, Integer> codes = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private long valueBytes;
+        private long textBytes;
+
+        private byte type;
+        private long offset;
+        private long length;
+
+        // Text offset of the next value
+        private int textEnd;
+
+        void add(String value) {
+            textBytes += utf8Length(value);
+            if (numbers && scale(value) == Byte.MIN_VALUE) {
+                numbers = false;
+            }
+            if (codes != null && !codes.containsKey(value)) {
+                if (codes.size() == MAX_DICTIONARY) {
+                    codes = null;
+                    values.clear();
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    codes.put(value, codes.size());
+                    values.add(bytes);
+                    valueBytes += bytes.length;
+                }
+            }
+        }
+
+        void choose(long rowCount, String name) throws IOException {
+            if (numbers) {
+                type = NUMBER;
+                length = rowCount * 9;
+                codes = null;
+                values.clear();
+            } else if (codes != null) {
+                type = DICTIONARY;
+                length = 4 + 4L * (values.size() + 1) + valueBytes + rowCount * codeWidth();
+            } else {
+                type = TEXT;
+                length = 4 * (rowCount + 1) + textBytes;
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Column " + name + " is too large for the cache, over 2 GB");
+            }
+        }
+
+        int codeWidth() {
+            return values.size() <= 256 ? 1 : 2;
+        }
+
+        void write(String value, SectionWriter first, SectionWriter second) throws IOException {
+            switch (type) {
+                case NUMBER:
+                    int scale = scale(value);
+                    first.putLong(scale == EMPTY ? 0 : unscaled(value));
+                    second.putByte((byte) scale);
+                    break;
+                case DICTIONARY:
+                    Integer code = codes.get(value);
+                    if (code == null) {
+                        throw new IOException("File changed while it was cached");
+                    }
+                    if (codeWidth() == 1) {
+                        first.putByte((byte) (int) code);
+                    } else {
+                        first.putShort((short) (int) code);
+                    }
+                    break;
+                default:
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    textEnd += bytes.length;
+                    first.putInt(textEnd);
+                    second.put(bytes);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Scale of a value that is empty ({@link #EMPTY}) or a decimal number written the way
+     * {@link #formatNumber(long, int)} writes it; {@link Byte#MIN_VALUE} for any other value.
+     */
+    static int scale(String value) {
+        if (value.isEmpty()) {
+            return EMPTY;
+        }
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        int point = -1;
+        int digits = 0;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '.' && point < 0) {
+                point = i;
+            } else if (c >= '0' && c <= '9') {
+                digits++;
+            } else {
+                return Byte.MIN_VALUE;
+            }
+        }
+        if (digits == 0 || digits > MAX_DIGITS || point == start || point == value.length() - 1) {
+            return Byte.MIN_VALUE;
+        }
+        int scale = point < 0 ? 0 : value.length() - point - 1;
+        // No leading zeros or negative zero, which would not come back the same
+        return formatNumber(unscaled(value), scale).equals(value) ? scale : Byte.MIN_VALUE;
+    }
+
+    /**
+     * The digits of a decimal number as a whole number, with its sign.
+     */
+    static long unscaled(String value) {
+        long unscaled = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                unscaled = unscaled * 10 + (c - '0');
+            }
+        }
+        return value.charAt(0) == '-' ? -unscaled : unscaled;
+    }
+
+    static String formatNumber(long unscaled, int scale) {
+        if (scale == EMPTY) {
+            return "";
+        }
+        if (scale == 0) {
+            return Long.toString(unscaled);
+        }
+        // Sign, at most MAX_DIGITS digits and the point
+        char[] chars = new char[MAX_DIGITS + 2];
+        int position = chars.length;
+        long rest = Math.abs(unscaled);
+        for (int i = 0; i < scale; i++) {
+            chars[--position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
+        chars[--position] = '.';
+        do {
+            chars[--position] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (unscaled < 0) {
+            chars[--position] = '-';
+        }
+        return new String(chars, position, chars.length - position);
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // Unpaired surrogates are encoded as '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Buffered writes to consecutive positions of the cache file.
+     */
+    private static final class SectionWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+        private long position;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putShort(short value) throws IOException {
+            ensure(2);
+            buffer.putShort(value);
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            long start = position;
+            position += buffer.remaining();
+            writeFully(channel, buffer, start);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.example.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Records of a {@link ColumnCache}, read from its memory-mapped column sections. A field is
+ * only decoded when it is asked for; filters on dictionary columns are tested once per
+ * distinct value, so a rejected record costs a code lookup.
+ */
+final class ColumnCacheReader implements RecordReader {
+
+    private final Map<String, Integer> headerMap;
+    private final long rowCount;
+    private final Column[] columns;
+    private final String[] values;
+    private final List<RowFilter> filters = new ArrayList<>();
+    private long row = -1;
+
+    ColumnCacheReader(Map<String, Integer> headerMap, long rowCount, Column[] columns) {
+        this.headerMap = headerMap;
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.values = new String[columns.length];
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderMap() {
+        return new LinkedHashMap<>(headerMap);
+    }
+
+    @Override
+    public boolean next() {
+        while (++row < rowCount) {
+            if (accepted(row)) {
+                Arrays.fill(values, null);
+                return true;
+            }
+        }
+        row = rowCount;
+        return false;
+    }
+
+    private boolean accepted(long row) {
+        for (RowFilter filter : filters) {
+            if (!filter.accepts(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return columns.length;
+    }
+
+    @Override
+    public String get(int index) {
+        String value = values[index];
+        if (value == null) {
+            value = columns[index].get(row);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean pushFilter(int index, Predicate<String> filter) {
+        if (index >= columns.length) {
+            // No record has the field, so none is left out
+            return true;
+        }
+        filters.add(columns[index].filter(filter));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // The sections stay mapped until they are garbage collected
+    }
+
+    static Column column(byte type, ByteBuffer section, long rowCount) {
+        switch (type) {
+            case ColumnCache.NUMBER:
+                return new NumberColumn(section, rowCount);
+            case ColumnCache.DICTIONARY:
+                return new DictionaryColumn(section, rowCount);
+            case ColumnCache.TEXT:
+                return new TextColumn(section, rowCount);
+            default:
+                throw new IllegalArgumentException("Unknown column type " + type);
+        }
+    }
+
+    interface RowFilter {
+        boolean accepts(long row);
+    }
+
+    abstract static class Column {
+
+        abstract String get(long row);
+
+        RowFilter filter(Predicate<String> filter) {
+            return row -> filter.test(get(row));
+        }
+    }
+
+    /**
+     * Unscaled values as longs, then their scales as bytes.
+     */
+    private static final class NumberColumn extends Column {
+
+        private final ByteBuffer section;
+        private final long scales;
+
+        NumberColumn(ByteBuffer section, long rowCount) {
+            this.section = section;
+            this.scales = rowCount * 8;
+        }
+
+        @Override
+        String get(long row) {
+            return ColumnCache.formatNumber(section.getLong((int) (row * 8)), section.get((int) (scales + row)));
+        }
+    }
+
+    /**
+     * Number of values, their end offsets after a leading 0, the values as UTF-8, then a
+     * 1 or 2 byte code per record.
+     */
+    private static final class DictionaryColumn extends Column {
+
+        private final ByteBuffer section;
+        private final String[] dictionary;
+        private final long codes;
+        private final boolean wide;
+
+        DictionaryColumn(ByteBuffer section, long rowCount) {
+            this.section = section;
+            int size = section.getInt(0);
+            if (size > ColumnCache.MAX_DICTIONARY) {
+                throw new IllegalArgumentException("Dictionary of " + size + " values");
+            }
+            int bytes = 4 + 4 * (size + 1);
+            dictionary = new String[size];
+            for (int i = 0; i < size; i++) {
+                int start = section.getInt(4 + 4 * i);
+                int end = section.getInt(8 + 4 * i);
+                dictionary[i] = decode(section, bytes + start, end - start);
+            }
+            this.codes = bytes + (long) section.getInt(4 + 4 * size);
+            this.wide = size > 256;
+        }
+
+        private int code(long row) {
+            return wide
+                    ? section.getShort((int) (codes + row * 2)) & 0xFFFF
+                    : section.get((int) (codes + row)) & 0xFF;
+        }
+
+        @Override
+        String get(long row) {
+            return dictionary[code(row)];
+        }
+
+        @Override
+        RowFilter filter(Predicate<String> filter) {
+            boolean[] accepted = new boolean[dictionary.length];
+            for (int i = 0; i < dictionary.length; i++) {
+                accepted[i] = filter.test(dictionary[i]);
+            }
+            return row -> accepted[code(row)];
+        }
+    }
+
+    /**
+     * End offsets of the values after a leading 0, then the values as UTF-8.
+     */
+    private static final class TextColumn extends Column {
+
+        private final ByteBuffer section;
+        private final int bytes;
+
+        TextColumn(ByteBuffer section, long rowCount) {
+            this.section = section;
+            this.bytes = (int) (4 * (rowCount + 1));
+        }
+
+        @Override
+        String get(long row) {
+            int index = (int) (row * 4);
+            int start = section.getInt(index);
+            return decode(section, bytes + start, section.getInt(index + 4) - start);
+        }
+    }
+
+    private static String decode(ByteBuffer section, int offset, int length) {
+        byte[] bytes = new byte[length];
+        section.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
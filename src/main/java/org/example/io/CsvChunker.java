@@ -0,0 +1,313 @@
+package org.example.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a CSV file into byte ranges that start and end at record boundaries, so the
+ * ranges can be parsed independently on different threads.
+ *
+ * A newline only ends a record when it is not inside a quoted field, and whether a byte
+ * is inside quotes depends on everything before it. The file is therefore cut into equal
+ * raw ranges which are scanned in parallel with a small CSV lexer started from every
+ * possible state at once; afterwards the real state at each range start is resolved in
+ * order and the first record boundary after it becomes the chunk boundary.
+ *
+ * Works for RFC 4180 files (comma delimiter, double quote) in any ASCII compatible
+ * encoding such as UTF-8.
+ */
+public final class CsvChunker {
+
+    // Lexer states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int STATES = 4;
+
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    private CsvChunker() {
+    }
+
+    /**
+     * A byte range {@code [start, end)} of a file holding whole records.
+     */
+    public static final class Chunk {
+        private final int index;
+        private final long start;
+        private final long end;
+
+        Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long getLength() {
+            return end - start;
+        }
+    }
+
+    /**
+     * True if quotes, commas and line breaks are single ASCII bytes in the charset,
+     * which the byte level scan relies on.
+     */
+    public static boolean supports(Charset charset) {
+        return Arrays.equals(",\"\r\n".getBytes(charset), ",\"\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Splits the whole file into at most {@code chunkCount} chunks of similar size.
+     * The first chunk starts at offset 0 and so contains the header record, if any.
+     */
+    public static List<Chunk> split(File file, int chunkCount, ExecutorService pool) throws IOException {
+        long size = file.length();
+        int rawCount = (int) Math.max(1, Math.min(chunkCount, size / SCAN_BUFFER_SIZE));
+
+        long[] rawStarts = new long[rawCount + 1];
+        for (int i = 0; i <= rawCount; i++) {
+            rawStarts[i] = size * i / rawCount;
+        }
+
+        // Scan every raw range from each possible start state
+        List<Future<RangeScan>> scans = new ArrayList<>();
+        for (int i = 1; i < rawCount; i++) {
+            long from = rawStarts[i];
+            long to = rawStarts[i + 1];
+            scans.add(pool.submit(() -> scan(file, from, to)));
+        }
+
+        // The state at the start of the file is known, walk forward resolving the others
+        List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = 0;
+        int state = scan(file, 0, rawStarts[1]).endStates[FIELD_START];
+        for (int i = 1; i < rawCount; i++) {
+            RangeScan range = await(scans.get(i - 1));
+            long boundary = range.firstBoundaries[state];
+            if (boundary >= 0) {
+                chunks.add(new Chunk(chunks.size(), chunkStart, boundary));
+                chunkStart = boundary;
+            }
+            state = range.endStates[state];
+        }
+        chunks.add(new Chunk(chunks.size(), chunkStart, size));
+        return chunks;
+    }
+
+    /**
+     * Opens a stream returning exactly the bytes of the chunk.
+     */
+    public static InputStream open(File file, Chunk chunk) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel.position(chunk.getStart());
+        return new BoundedInputStream(Channels.newInputStream(channel), chunk.getLength());
+    }
+
+    /**
+     * Offset just after the newline ending the first record, such as the header, or -1 if
+     * there is none within the first {@code limit} bytes.
+     */
+    public static long firstRecordEnd(File file, int limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.min(limit, SCAN_BUFFER_SIZE));
+            byte[] bytes = buffer.array();
+            int state = FIELD_START;
+            long position = 0;
+            while (position < limit) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), limit - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n' && state != QUOTED) {
+                        return position + i + 1;
+                    }
+                    state = next(state, bytes[i]);
+                }
+                position += read;
+            }
+            return -1;
+        }
+    }
+
+    private static RangeScan scan(File file, long from, long to) throws IOException {
+        RangeScan result = new RangeScan();
+        Arrays.fill(result.firstBoundaries, -1);
+
+        // One lexer lane per possible start state; lanes usually converge after a few bytes,
+        // from then on a single lane is advanced
+        int[] states = {FIELD_START, UNQUOTED, QUOTED, QUOTE_IN_QUOTED};
+        boolean converged = false;
+        int state = FIELD_START;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            long position = from;
+            while (position < to) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), to - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+
+                for (int i = 0; i < read; i++) {
+                    byte b = bytes[i];
+                    if (converged) {
+                        if (b == '\n' && state != QUOTED) {
+                            setMissingBoundaries(result, position + i + 1);
+                        }
+                        state = next(state, b);
+                        continue;
+                    }
+
+                    for (int lane = 0; lane < STATES; lane++) {
+                        if (b == '\n' && states[lane] != QUOTED && result.firstBoundaries[lane] < 0) {
+                            result.firstBoundaries[lane] = position + i + 1;
+                        }
+                        states[lane] = next(states[lane], b);
+                    }
+                    if (allEqual(states)) {
+                        converged = true;
+                        state = states[0];
+                    }
+                }
+                position += read;
+            }
+        }
+
+        for (int lane = 0; lane < STATES; lane++) {
+            result.endStates[lane] = converged ? state : states[lane];
+        }
+        return result;
+    }
+
+    private static void setMissingBoundaries(RangeScan result, long boundary) {
+        for (int lane = 0; lane < STATES; lane++) {
+            if (result.firstBoundaries[lane] < 0) {
+                result.firstBoundaries[lane] = boundary;
+            }
+        }
+    }
+
+    private static int next(int state, byte b) {
+        switch (state) {
+            case FIELD_START:
+                if (b == '"') {
+                    return QUOTED;
+                }
+                return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+            case UNQUOTED:
+                return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+            case QUOTED:
+                return b == '"' ? QUOTE_IN_QUOTED : QUOTED;
+            default:
+                // A second quote is an escaped quote, anything else closes the field
+                if (b == '"') {
+                    return QUOTED;
+                }
+                return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+        }
+    }
+
+    private static boolean allEqual(int[] states) {
+        for (int state : states) {
+            if (state != states[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting file", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static final class RangeScan {
+        // Offset just after the first record ending newline, or -1, per start state
+        final long[] firstBoundaries = new long[STATES];
+        final int[] endStates = new int[STATES];
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.io;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Opens command input with an explicit charset and a large read buffer.
+ */
+public final class CsvInput {
+
+    public static final String STDIN = "-";
+
+    private CsvInput() {
+    }
+
+    /**
+     * Opens a file, or stdin for {@code "-"}.
+     */
+    public static Reader open(String path, Charset charset, int bufferSize) throws IOException {
+        if (STDIN.equals(path)) {
+            return wrap(System.in, charset, bufferSize);
+        }
+        return open(new File(path), charset, bufferSize);
+    }
+
+    public static Reader open(File file, Charset charset, int bufferSize) throws IOException {
+        if (!file.exists()) {
+            throw new IOException("File not found: " + file.getPath());
+        }
+        return wrap(new FileInputStream(file), charset, bufferSize);
+    }
+
+    /**
+     * Opens the bytes of a single chunk of a file.
+     */
+    public static Reader open(File file, CsvChunker.Chunk chunk, Charset charset, int bufferSize) throws IOException {
+        return wrap(CsvChunker.open(file, chunk), charset, bufferSize);
+    }
+
+    private static Reader wrap(InputStream in, Charset charset, int bufferSize) {
+        // Large byte reads from the source, decoded in large batches
+        return new BufferedReader(new InputStreamReader(new BufferedInputStream(in, bufferSize), charset), bufferSize);
+    }
+}
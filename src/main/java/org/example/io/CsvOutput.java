@@ -0,0 +1,77 @@
+package org.example.io;
+
+import de.siegmar.fastcsv.writer.CsvWriter;
+import de.siegmar.fastcsv.writer.LineDelimiter;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Buffered writers for command output.
+ *
+ * Stdout is written through one large buffer on the stdout file descriptor instead of
+ * through {@link System#out}, whose {@link PrintStream} flushes far more often. Closing
+ * the stdout writer only flushes it, so stdout stays usable.
+ */
+public final class CsvOutput {
+
+    private CsvOutput() {
+    }
+
+    public static Writer stdout(Charset charset, int bufferSize) {
+        // Anything already written through System.out has to come first
+        System.out.flush();
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        return new NonClosingWriter(new OutputStreamWriter(out, charset), bufferSize);
+    }
+
+    public static Writer file(File file, Charset charset, int bufferSize) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), charset), bufferSize);
+    }
+
+    /**
+     * Stdout for output that is partly copied from input files as bytes.
+     */
+    public static OutputStream stdoutBytes(int bufferSize) {
+        System.out.flush();
+        return new NonClosingOutputStream(new FileOutputStream(FileDescriptor.out), bufferSize);
+    }
+
+    public static OutputStream fileBytes(File file, int bufferSize) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(file), bufferSize);
+    }
+
+    /**
+     * CSV writer with CRLF line endings and minimal quoting. Closing it closes {@code out}.
+     */
+    public static CsvWriter csv(Writer out) {
+        return CsvWriter.builder()
+                .lineDelimiter(LineDelimiter.CRLF)
+                .quoteStrategy(MinimalQuoteStrategy.INSTANCE)
+                .build(out);
+    }
+
+    private static final class NonClosingWriter extends BufferedWriter {
+
+        NonClosingWriter(Writer out, int bufferSize) {
+            super(out, bufferSize);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class NonClosingOutputStream extends BufferedOutputStream {
+
+        NonClosingOutputStream(OutputStream out, int bufferSize) {
+            super(out, bufferSize);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.io;
+
+import de.siegmar.fastcsv.writer.CsvWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link RecordWriter} writing CSV through a FastCSV writer. Closing it closes the writer.
+ */
+public final class CsvRecordWriter implements RecordWriter {
+
+    private final CsvWriter csv;
+    private CsvWriter.CsvWriterRecord record;
+
+    public CsvRecordWriter(CsvWriter csv) {
+        this.csv = csv;
+    }
+
+    @Override
+    public void writeField(String value) {
+        if (record == null) {
+            record = csv.writeRecord();
+        }
+        record.writeField(value);
+    }
+
+    @Override
+    public void endRecord() {
+        if (record == null) {
+            // An empty line
+            record = csv.writeRecord();
+        }
+        record.endRecord();
+        record = null;
+    }
+
+    @Override
+    public void writeRecord(String... values) {
+        csv.writeRecord(values);
+    }
+
+    @Override
+    public void writeRecord(List<String> values) {
+        csv.writeRecord(values);
+    }
+
+    @Override
+    public void close() throws IOException {
+        csv.close();
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.io;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the header map of a header record, following the rules of Commons CSV's
+ * {@code CSVFormat.DEFAULT}: blank names are rejected, a duplicate name maps to its last
+ * position but keeps the place of its first occurrence.
+ */
+final class Headers {
+
+    private Headers() {
+    }
+
+    static Map<String, Integer> of(String[] names) {
+        Map<String, Integer> headerMap = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].trim().isEmpty()) {
+                throw new IllegalArgumentException("A header name is missing in " + Arrays.toString(names));
+            }
+            headerMap.put(names[i], i);
+        }
+        return headerMap;
+    }
+}
@@ -0,0 +1,404 @@
+package org.example.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Reads a UTF-8 CSV file through memory-mapped windows, tokenizing the bytes directly.
+ *
+ * A record is only split into field offsets; a field is decoded into a {@link String}
+ * the first time {@link #get(int)} asks for it, so columns that are never looked at cost
+ * no decoding or allocation. Delimiters, quotes and line breaks are ASCII bytes, which
+ * never occur inside a multi-byte UTF-8 sequence.
+ *
+ * The file is mapped in windows of at most 256 MB, so files of any size can be read.
+ * A record crossing the end of a window is re-read from a window starting at the record.
+ *
+ * Fields after a {@link #limitFields(int) limit} are not split, and a record rejected by a
+ * {@link #pushFilter(int, Predicate) filter} is only scanned for its end once the filtered
+ * field is rejected.
+ *
+ * Parses like {@code CSVFormat.DEFAULT.withFirstRecordAsHeader()} of Commons CSV: empty
+ * lines are skipped, whitespace between a closing quote and the delimiter is ignored, and
+ * the header rules are the same. {@link StreamCsvReader} follows the same rules for input
+ * that is not mapped.
+ */
+public class MappedCsvReader implements RecordReader {
+
+    static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    // Results of reading a record from the current window
+    private static final int END_OF_INPUT = 0;
+    private static final int RECORD = 1;
+    private static final int NEED_MORE = 2;
+    private static final int REJECTED = 3;
+
+    private final FileChannel channel;
+    private final long end;
+    private int windowSize;
+    private final Map<String, Integer> headerMap;
+
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long windowStart;
+    private int position = 0;
+
+    // Fields of the current record as offsets into the window
+    private int fieldCount = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private String[] values = new String[16];
+    private byte[] scratch = new byte[256];
+
+    // Fields split per record and filters by field index
+    private int fieldLimit = Integer.MAX_VALUE;
+    private Predicate<String>[] filters;
+    private boolean rejected;
+
+    /**
+     * Reads a whole file whose first record is the header.
+     */
+    public MappedCsvReader(File file) throws IOException {
+        this(file, 0, file.length(), true, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads the records in the byte range {@code [start, end)} of a file, for example a
+     * {@link CsvChunker.Chunk}.
+     *
+     * @param header whether the first record of the range is the header record
+     */
+    public MappedCsvReader(File file, long start, long end, boolean header) throws IOException {
+        this(file, start, end, header, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedCsvReader(File file, long start, long end, boolean header, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.windowStart = start;
+        this.end = end;
+        this.windowSize = windowSize;
+
+        try {
+            this.headerMap = header ? readHeader() : new LinkedHashMap<>();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private Map<String, Integer> readHeader() throws IOException {
+        if (!next()) {
+            return new LinkedHashMap<>();
+        }
+        String[] names = new String[fieldCount];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = get(i);
+        }
+        return Headers.of(names);
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderMap() {
+        return new LinkedHashMap<>(headerMap);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            int result = readRecord();
+            if (result == NEED_MORE) {
+                remap();
+            } else if (result != REJECTED) {
+                return result == RECORD;
+            }
+        }
+    }
+
+    @Override
+    public void limitFields(int count) {
+        fieldLimit = count;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean pushFilter(int index, Predicate<String> filter) {
+        if (filters == null) {
+            filters = (Predicate<String>[]) new Predicate<?>[index + 1];
+        } else if (filters.length <= index) {
+            filters = Arrays.copyOf(filters, index + 1);
+        }
+        filters[index] = filters[index] == null ? filter : filters[index].and(filter);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return fieldCount;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        String value = values[index];
+        if (value == null) {
+            value = decode(index);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    private boolean atEnd(int limit) {
+        return windowStart + limit == end;
+    }
+
+    /**
+     * Reads one record starting at {@link #position}. On {@link #NEED_MORE} nothing is
+     * consumed, except for empty lines before the record.
+     */
+    private int readRecord() throws IOException {
+        // Fields of a rejected or incomplete record may have been decoded
+        Arrays.fill(values, 0, fieldCount, null);
+        fieldCount = 0;
+        rejected = false;
+
+        ByteBuffer buf = window;
+        int limit = buf.limit();
+        int pos = position;
+
+        // Empty lines are skipped
+        while (pos < limit && (buf.get(pos) == LF || buf.get(pos) == CR)) {
+            pos++;
+        }
+        position = pos;
+        if (pos == limit) {
+            return atEnd(limit) ? END_OF_INPUT : NEED_MORE;
+        }
+
+        while (true) {
+            if (pos < limit && buf.get(pos) == QUOTE) {
+                int quoteStart = pos;
+                int start = ++pos;
+                boolean hasEscapes = false;
+                while (true) {
+                    if (pos == limit) {
+                        if (atEnd(limit)) {
+                            throw new IOException("(startline " + lineNumber(quoteStart) + ") EOF reached before encapsulated token finished");
+                        }
+                        return NEED_MORE;
+                    }
+                    if (buf.get(pos) == QUOTE) {
+                        if (pos + 1 == limit && !atEnd(limit)) {
+                            return NEED_MORE;
+                        }
+                        if (pos + 1 < limit && buf.get(pos + 1) == QUOTE) {
+                            hasEscapes = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    pos++;
+                }
+                addField(start, pos, hasEscapes);
+                pos++;
+
+                // Only whitespace may follow the closing quote
+                while (true) {
+                    if (pos == limit) {
+                        if (atEnd(limit)) {
+                            position = pos;
+                            return rejected ? REJECTED : RECORD;
+                        }
+                        return NEED_MORE;
+                    }
+                    byte b = buf.get(pos);
+                    if (b == COMMA || b == CR || b == LF) {
+                        break;
+                    }
+                    int length = whitespaceLength(buf, pos, limit);
+                    if (length < 0) {
+                        return NEED_MORE;
+                    }
+                    if (length == 0) {
+                        throw new IOException("(line " + lineNumber(pos) + ") invalid char between encapsulated token and delimiter");
+                    }
+                    pos += length;
+                }
+            } else {
+                int start = pos;
+                while (pos < limit) {
+                    byte b = buf.get(pos);
+                    if (b == COMMA || b == CR || b == LF) {
+                        break;
+                    }
+                    pos++;
+                }
+                if (pos == limit) {
+                    if (!atEnd(limit)) {
+                        return NEED_MORE;
+                    }
+                    addField(start, pos, false);
+                    position = pos;
+                    return rejected ? REJECTED : RECORD;
+                }
+                addField(start, pos, false);
+            }
+
+            if (buf.get(pos) != COMMA) {
+                // A line break ends the record, the LF of a CRLF is skipped as an empty line
+                position = pos + 1;
+                return rejected ? REJECTED : RECORD;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Length of the whitespace character at {@code pos} as defined by
+     * {@link Character#isWhitespace(int)}, 0 if it is not whitespace, -1 if the window
+     * ends inside the character.
+     */
+    private int whitespaceLength(ByteBuffer buf, int pos, int limit) {
+        int b = buf.get(pos) & 0xFF;
+        if (b < 0x80) {
+            return Character.isWhitespace(b) ? 1 : 0;
+        }
+
+        int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        if (pos + length > limit) {
+            return atEnd(limit) ? 0 : -1;
+        }
+        // All non-ASCII whitespace is in the BMP; supplementary characters are never whitespace
+        if (length == 1 || length == 4) {
+            return 0;
+        }
+        int codePoint = length == 2
+                ? (b & 0x1F) << 6 | buf.get(pos + 1) & 0x3F
+                : (b & 0x0F) << 12 | (buf.get(pos + 1) & 0x3F) << 6 | buf.get(pos + 2) & 0x3F;
+        return Character.isWhitespace(codePoint) ? length : 0;
+    }
+
+    /**
+     * Adds a field to the current record, unless it is past the field limit or the record
+     * is rejected; tests it if there is a filter for it.
+     */
+    private void addField(int start, int end, boolean hasEscapes) {
+        if (rejected || fieldCount == fieldLimit) {
+            return;
+        }
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = hasEscapes;
+        fieldCount++;
+
+        if (filters != null && fieldCount <= filters.length) {
+            Predicate<String> filter = filters[fieldCount - 1];
+            rejected = filter != null && !filter.test(get(fieldCount - 1));
+        }
+    }
+
+    private String decode(int index) {
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+
+        if (!escaped[index]) {
+            window.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        // Collapse doubled quotes
+        int n = 0;
+        for (int pos = start; pos < start + length; pos++) {
+            byte b = window.get(pos);
+            scratch[n++] = b;
+            if (b == QUOTE) {
+                pos++;
+            }
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps a new window starting at the current position. If the window already starts
+     * there, the record is larger than the window and the window size is doubled.
+     */
+    private void remap() throws IOException {
+        long start = windowStart + position;
+        if (position == 0 && window.limit() > 0) {
+            if (windowSize == Integer.MAX_VALUE) {
+                throw new IOException("Record at byte " + start + " is larger than 2 GB");
+            }
+            windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+        }
+
+        long size = Math.min(windowSize, end - start);
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        window = mapped;
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * 1-based line of a byte offset in the window, counted like Commons CSV from the start
+     * of the file: CR, LF and CRLF each end a line. Only used for error messages, so the
+     * file is simply re-read.
+     */
+    private long lineNumber(int pos) throws IOException {
+        long end = windowStart + pos;
+        long lines = 1;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte previous = 0;
+        for (long offset = 0; offset < end; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == CR || b == LF && previous != CR) {
+                    lines++;
+                }
+                previous = b;
+            }
+            offset += read;
+        }
+        return lines;
+    }
+}
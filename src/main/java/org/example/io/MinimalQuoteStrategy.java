@@ -0,0 +1,32 @@
+package org.example.io;
+
+import de.siegmar.fastcsv.writer.QuoteStrategy;
+
+/**
+ * Quotes the same values as Commons CSV's {@code QuoteMode.MINIMAL}, so output written
+ * with FastCSV is byte for byte what the commands always printed.
+ *
+ * FastCSV itself quotes values containing a delimiter, quote or line break. In addition
+ * an empty first field is quoted, otherwise a record with a single empty value would be
+ * an empty line, and so are values starting with a character up to {@code '#'} or ending
+ * with whitespace.
+ */
+final class MinimalQuoteStrategy implements QuoteStrategy {
+
+    static final MinimalQuoteStrategy INSTANCE = new MinimalQuoteStrategy();
+
+    private static final char COMMENT = '#';
+
+    private MinimalQuoteStrategy() {
+    }
+
+    @Override
+    public boolean quoteEmpty(int lineNo, int fieldIdx) {
+        return fieldIdx == 0;
+    }
+
+    @Override
+    public boolean quoteNonEmpty(int lineNo, int fieldIdx, String value) {
+        return value.charAt(0) <= COMMENT || value.charAt(value.length() - 1) <= ' ';
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Passes records from one pipeline stage to the next, running on another thread, without
+ * writing and parsing CSV in between.
+ *
+ * Records travel as string arrays in batches through a bounded queue, so a fast writer
+ * waits for a slow reader instead of filling the heap. The first record is the header.
+ * Records without fields are dropped, as a CSV reader skips empty lines.
+ *
+ * The writing stage ends with {@link #finish()} or {@link #fail()}; the reading stage
+ * calls {@link #stop(boolean)} when it is done, whether or not it read everything.
+ */
+public final class RecordPipe {
+
+    private static final int BATCH_RECORDS = 1024;
+    private static final int QUEUE_BATCHES = 4;
+
+    private static final Object END = new Object();
+    private static final Object FAILED = new Object();
+
+    // States of the reading stage
+    private static final int READING = 0;
+    private static final int STOPPED = 1;
+    private static final int STOPPED_FAILED = 2;
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private final Output output = new Output();
+    private Input input;
+    private volatile int readerState = READING;
+
+    /**
+     * The writing end.
+     */
+    public RecordWriter output() {
+        return output;
+    }
+
+    /**
+     * The reading end, whose header is the first record. Waits for the header.
+     */
+    public synchronized RecordReader input() throws IOException {
+        if (input == null) {
+            input = new Input();
+        }
+        return input;
+    }
+
+    /**
+     * Passes on the records written so far and ends the input of the reading stage.
+     */
+    public void finish() {
+        output.passOn();
+        send(END);
+    }
+
+    /**
+     * Ends the input of the reading stage with an error; records not passed on yet are dropped.
+     */
+    public void fail() {
+        send(FAILED);
+    }
+
+    /**
+     * Called when the reading stage is done. Records written after that are dropped, or,
+     * if the stage failed, make the writing stage fail too.
+     */
+    public void stop(boolean failed) {
+        readerState = failed ? STOPPED_FAILED : STOPPED;
+        // A writer waiting for space gets it, and sees the new state before its next batch
+        queue.clear();
+    }
+
+    /**
+     * Queues an item for the reading stage, false if that has stopped.
+     */
+    private boolean send(Object item) {
+        if (readerState != READING) {
+            return false;
+        }
+        try {
+            queue.put(item);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while passing records on"));
+        }
+    }
+
+    private Object take() throws InterruptedIOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for records");
+        }
+    }
+
+    private final class Output implements RecordWriter {
+
+        private String[] fields = new String[16];
+        private int fieldCount = 0;
+        private String[][] batch = new String[BATCH_RECORDS][];
+        private int batchSize = 0;
+
+        @Override
+        public void writeField(String value) {
+            if (fieldCount == fields.length) {
+                fields = Arrays.copyOf(fields, fields.length * 2);
+            }
+            fields[fieldCount++] = value;
+        }
+
+        @Override
+        public void endRecord() {
+            if (fieldCount > 0) {
+                add(Arrays.copyOf(fields, fieldCount));
+                Arrays.fill(fields, 0, fieldCount, null);
+                fieldCount = 0;
+            }
+        }
+
+        @Override
+        public void writeRecord(String... values) {
+            if (values.length > 0) {
+                // The caller may reuse the array
+                add(values.clone());
+            }
+        }
+
+        @Override
+        public void writeRecord(List<String> values) {
+            if (!values.isEmpty()) {
+                add(values.toArray(new String[0]));
+            }
+        }
+
+        private void add(String[] record) {
+            batch[batchSize++] = record;
+            if (batchSize == batch.length) {
+                handOver();
+            }
+        }
+
+        private void handOver() {
+            if (!passOn() && readerState == STOPPED_FAILED) {
+                throw new UncheckedIOException("Next pipeline stage failed", new IOException());
+            }
+        }
+
+        /**
+         * Queues the pending records, false if the reading stage has stopped.
+         */
+        boolean passOn() {
+            if (batchSize == 0) {
+                return readerState == READING;
+            }
+            String[][] records = batchSize == batch.length ? batch : Arrays.copyOf(batch, batchSize);
+            batch = new String[BATCH_RECORDS][];
+            batchSize = 0;
+            return send(records);
+        }
+
+        @Override
+        public void close() {
+            handOver();
+        }
+    }
+
+    private final class Input implements RecordReader {
+
+        private final Map<String, Integer> headerMap;
+        private String[][] batch = new String[0][];
+        private int position = 0;
+        private String[] current;
+        private Object last;
+
+        Input() throws IOException {
+            this.headerMap = next() ? Headers.of(current) : new LinkedHashMap<>();
+            current = null;
+        }
+
+        @Override
+        public Map<String, Integer> getHeaderMap() {
+            return new LinkedHashMap<>(headerMap);
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (position == batch.length) {
+                if (last == null) {
+                    Object item = take();
+                    if (item instanceof String[][]) {
+                        batch = (String[][]) item;
+                        position = 0;
+                    } else {
+                        last = item;
+                    }
+                }
+                if (last == FAILED) {
+                    throw new IOException("Previous pipeline stage failed");
+                }
+                if (last == END) {
+                    current = null;
+                    return false;
+                }
+            }
+            current = batch[position++];
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return current.length;
+        }
+
+        @Override
+        public String get(int index) {
+            return current[index];
+        }
+
+        @Override
+        public void close() {
+            // The pipeline stops the pipe when the stage is done
+        }
+    }
+}
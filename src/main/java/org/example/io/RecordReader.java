@@ -0,0 +1,54 @@
+package org.example.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Forward-only access to the records of a CSV input whose first record is the header.
+ *
+ * Only the current record is accessible; its fields are valid until {@link #next()} is
+ * called again.
+ */
+public interface RecordReader extends Closeable {
+
+    /**
+     * Header names mapped to their field index, in header order.
+     */
+    Map<String, Integer> getHeaderMap();
+
+    /**
+     * Advances to the next record, false at the end of the input.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Number of fields of the current record.
+     */
+    int size();
+
+    /**
+     * Field of the current record.
+     */
+    String get(int index);
+
+    /**
+     * Lets the reader split only the first {@code count} fields of each record and skip the
+     * rest; {@link #size()} then counts at most {@code count} fields. Readers that cannot
+     * skip fields ignore it.
+     */
+    default void limitFields(int count) {
+    }
+
+    /**
+     * Lets the reader leave out records whose field {@code index} is rejected by
+     * {@code filter}, testing the field as soon as it is split, so the rest of a rejected
+     * record is only scanned for its end. Records without the field are not left out.
+     *
+     * @return false if the reader cannot filter and the caller has to test the records
+     */
+    default boolean pushFilter(int index, Predicate<String> filter) {
+        return false;
+    }
+}
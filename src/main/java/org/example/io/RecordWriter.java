@@ -0,0 +1,40 @@
+package org.example.io;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Destination of the records a command outputs: CSV text, or the next stage of a pipeline.
+ *
+ * A record is written field by field and ended with {@link #endRecord()}. Like FastCSV's
+ * writer, write errors are thrown as {@link java.io.UncheckedIOException}.
+ */
+public interface RecordWriter extends Closeable {
+
+    /**
+     * Adds a field to the current record.
+     */
+    void writeField(String value);
+
+    /**
+     * Ends the current record, which may have no fields.
+     */
+    void endRecord();
+
+    /**
+     * Writes one complete record. The values are not kept after the call.
+     */
+    default void writeRecord(String... values) {
+        for (String value : values) {
+            writeField(value);
+        }
+        endRecord();
+    }
+
+    default void writeRecord(List<String> values) {
+        for (String value : values) {
+            writeField(value);
+        }
+        endRecord();
+    }
+}
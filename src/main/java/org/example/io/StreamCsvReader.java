@@ -0,0 +1,212 @@
+package org.example.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link RecordReader} over a character stream.
+ *
+ * Used where the input cannot be memory-mapped (stdin, encodings other than UTF-8). Parses
+ * by the same rules as {@link MappedCsvReader}, so the same input gives the same records
+ * and errors from a file as from a pipe: empty lines are skipped, whitespace between a
+ * closing quote and the delimiter is ignored and any other character there is an error.
+ * Records may have any number of fields.
+ */
+public class StreamCsvReader implements RecordReader {
+
+    private static final char COMMA = ',';
+    private static final char QUOTE = '"';
+    private static final char CR = '\r';
+    private static final char LF = '\n';
+
+    private final Reader input;
+    private final char[] buffer = new char[1 << 16];
+    private int position = 0;
+    private int limit = 0;
+
+    // Lines are counted like Commons CSV for error messages: CR, LF and CRLF each end a line
+    private long line = 1;
+    private char previous;
+
+    private final Map<String, Integer> headerMap;
+    private String[] fields = new String[16];
+    private int fieldCount = 0;
+    // Characters of a field that is quoted or crosses the end of the buffer
+    private char[] field = new char[256];
+    private int fieldLength;
+
+    /**
+     * @param header whether the first record is the header record
+     */
+    public StreamCsvReader(Reader input, boolean header) throws IOException {
+        this.input = input;
+        try {
+            this.headerMap = header && next() ? Headers.of(Arrays.copyOf(fields, fieldCount)) : new LinkedHashMap<>();
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+        fieldCount = 0;
+    }
+
+    @Override
+    public Map<String, Integer> getHeaderMap() {
+        return new LinkedHashMap<>(headerMap);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        Arrays.fill(fields, 0, fieldCount, null);
+        fieldCount = 0;
+
+        // Empty lines are skipped
+        int c;
+        while ((c = peek()) == CR || c == LF) {
+            read();
+        }
+        if (c < 0) {
+            return false;
+        }
+
+        while (true) {
+            if (peek() == QUOTE) {
+                addField(quotedField());
+                // Only whitespace may follow the closing quote
+                while ((c = peek()) >= 0 && c != COMMA && c != CR && c != LF) {
+                    if (!Character.isWhitespace(c)) {
+                        throw new IOException("(line " + line + ") invalid char between encapsulated token and delimiter");
+                    }
+                    read();
+                }
+            } else {
+                addField(unquotedField());
+            }
+
+            // A line break ends the record, the LF of a CRLF is skipped as an empty line
+            if (read() != COMMA) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return fieldCount;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return fields[index];
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private String quotedField() throws IOException {
+        long startLine = line;
+        read();
+        fieldLength = 0;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IOException("(startline " + startLine + ") EOF reached before encapsulated token finished");
+            }
+            if (c == QUOTE) {
+                if (peek() != QUOTE) {
+                    return new String(field, 0, fieldLength);
+                }
+                read();
+            }
+            append(buffer, position - 1, 1);
+        }
+    }
+
+    /**
+     * Field up to the next delimiter or line break, cut from the buffer unless it crosses
+     * the end of the buffer. It contains no line breaks, so no lines are counted.
+     */
+    private String unquotedField() throws IOException {
+        fieldLength = 0;
+        int start = position;
+        while (true) {
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == COMMA || c == CR || c == LF) {
+                    return text(start);
+                }
+                position++;
+            }
+            append(buffer, start, position - start);
+            if (!fill()) {
+                return new String(field, 0, fieldLength);
+            }
+            start = position;
+        }
+    }
+
+    private String text(int start) {
+        if (position > start) {
+            previous = buffer[position - 1];
+        }
+        if (fieldLength == 0) {
+            return new String(buffer, start, position - start);
+        }
+        append(buffer, start, position - start);
+        return new String(field, 0, fieldLength);
+    }
+
+    private void addField(String value) {
+        if (fieldCount == fields.length) {
+            fields = Arrays.copyOf(fields, fieldCount * 2);
+        }
+        fields[fieldCount++] = value;
+    }
+
+    private void append(char[] chars, int offset, int length) {
+        if (fieldLength + length > field.length) {
+            field = Arrays.copyOf(field, Math.max(fieldLength + length, field.length * 2));
+        }
+        System.arraycopy(chars, offset, field, fieldLength, length);
+        fieldLength += length;
+    }
+
+    /**
+     * Next character without consuming it, -1 at the end of the input.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == CR || c == LF && previous != CR) {
+            line++;
+        }
+        previous = c;
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = input.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.match;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton answering whether a text contains any of a set of literals,
+ * in time linear in the text length regardless of the number of literals.
+ *
+ * Transitions of each node are stored as sorted char/int arrays and looked up with a
+ * binary search, which keeps 100k+ literal dictionaries compact.
+ */
+public class AhoCorasick {
+
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] failure;
+    // True if a literal ends at this node or at any node on its failure chain
+    private final boolean[] accepting;
+
+    public AhoCorasick(Collection<String> literals) {
+        // Build the trie with temporary maps
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        children.add(new TreeMap<>());
+        terminal.add(false);
+
+        for (String literal : literals) {
+            int node = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                Integer child = children.get(node).get(literal.charAt(i));
+                if (child == null) {
+                    child = children.size();
+                    children.get(node).put(literal.charAt(i), child);
+                    children.add(new TreeMap<>());
+                    terminal.add(false);
+                }
+                node = child;
+            }
+            terminal.set(node, true);
+        }
+
+        int size = children.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        failure = new int[size];
+        accepting = new boolean[size];
+
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> map = children.get(node);
+            labels[node] = new char[map.size()];
+            targets[node] = new int[map.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : map.entrySet()) {
+                labels[node][i] = entry.getKey();
+                targets[node][i] = entry.getValue();
+                i++;
+            }
+            accepting[node] = terminal.get(node);
+        }
+
+        // Breadth-first: failure links of a node only depend on shallower nodes
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            accepting[node] |= accepting[failure[node]];
+            for (int i = 0; i < labels[node].length; i++) {
+                int child = targets[node][i];
+                failure[child] = step(failure[node], labels[node][i]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * True if any of the literals occurs in the text.
+     */
+    public boolean containsAny(CharSequence text) {
+        if (accepting[0]) {
+            // The empty literal is contained in everything
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int index = Arrays.binarySearch(labels[state], c);
+            if (index >= 0) {
+                return targets[state][index];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+}
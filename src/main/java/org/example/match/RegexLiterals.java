@@ -0,0 +1,90 @@
+package org.example.match;
+
+/**
+ * Extracts a literal that every match of a regular expression must contain.
+ *
+ * Only the leading run of plain characters is considered (after an optional {@code ^}),
+ * and expressions with alternation or inline flags are left alone, so the analysis is
+ * conservative: when it returns a prefilter, a value failing it can never match.
+ */
+final class RegexLiterals {
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private RegexLiterals() {
+    }
+
+    static final class Prefilter {
+        private final String literal;
+        private final boolean anchored;
+
+        Prefilter(String literal, boolean anchored) {
+            this.literal = literal;
+            this.anchored = anchored;
+        }
+
+        boolean mayMatch(String value) {
+            return anchored ? value.startsWith(literal) : value.contains(literal);
+        }
+
+        String getLiteral() {
+            return literal;
+        }
+    }
+
+    static Prefilter prefilter(String regex) {
+        // Alternation makes any literal optional, inline flags may change case sensitivity
+        if (regex.indexOf('|') >= 0 || regex.contains("(?")) {
+            return null;
+        }
+
+        int pos = 0;
+        boolean anchored = false;
+        if (regex.startsWith("^")) {
+            anchored = true;
+            pos = 1;
+        }
+
+        StringBuilder literal = new StringBuilder();
+        while (pos < regex.length()) {
+            char c = regex.charAt(pos);
+            char literalChar;
+            int width;
+            if (c == '\\') {
+                // Escaped punctuation is literal, escaped letters and digits are classes or references
+                if (pos + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(pos + 1))) {
+                    break;
+                }
+                literalChar = regex.charAt(pos + 1);
+                width = 2;
+            } else if (METACHARACTERS.indexOf(c) >= 0 || Character.isSurrogate(c)) {
+                // Quantifiers after a surrogate pair apply to the whole code point, keep it simple
+                break;
+            } else {
+                literalChar = c;
+                width = 1;
+            }
+
+            // A following quantifier that allows zero repetitions makes this char optional
+            int next = pos + width;
+            if (next < regex.length()) {
+                char quantifier = regex.charAt(next);
+                if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                    break;
+                }
+                if (quantifier == '+') {
+                    literal.append(literalChar);
+                    break;
+                }
+            }
+
+            literal.append(literalChar);
+            pos = next;
+        }
+
+        if (literal.length() == 0) {
+            return null;
+        }
+        return new Prefilter(literal.toString(), anchored);
+    }
+}
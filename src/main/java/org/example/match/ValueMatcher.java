@@ -0,0 +1,56 @@
+package org.example.match;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a single field value matches.
+ *
+ * Implementations are immutable and may be shared between threads.
+ */
+@FunctionalInterface
+public interface ValueMatcher {
+
+    boolean matches(String value);
+
+    /**
+     * Value equals one of the literals; a hash lookup for more than one literal.
+     */
+    static ValueMatcher exact(Collection<String> literals) {
+        if (literals.size() == 1) {
+            String literal = literals.iterator().next();
+            return literal::equals;
+        }
+        Set<String> set = new HashSet<>(literals);
+        return set::contains;
+    }
+
+    /**
+     * Value contains one of the literals; {@link String#contains} for a single literal,
+     * an Aho-Corasick automaton otherwise.
+     */
+    static ValueMatcher substring(Collection<String> literals) {
+        if (literals.size() == 1) {
+            String literal = literals.iterator().next();
+            return value -> value.contains(literal);
+        }
+        AhoCorasick automaton = new AhoCorasick(literals);
+        return automaton::containsAny;
+    }
+
+    /**
+     * Regular expression found anywhere in the value. When the expression requires a
+     * literal (see {@link RegexLiterals}), values without it are rejected with a plain
+     * string search before the regex engine runs.
+     */
+    static ValueMatcher regex(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        RegexLiterals.Prefilter prefilter = RegexLiterals.prefilter(regex);
+        if (prefilter == null) {
+            return value -> pattern.matcher(value).find();
+        }
+        return value -> prefilter.mayMatch(value) && pattern.matcher(value).find();
+    }
+}
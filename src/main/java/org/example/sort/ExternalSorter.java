@@ -0,0 +1,291 @@
+package org.example.sort;
+
+import de.siegmar.fastcsv.reader.CloseableIterator;
+import de.siegmar.fastcsv.reader.CsvReader;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import de.siegmar.fastcsv.writer.CsvWriter;
+import org.example.io.CsvOutput;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Sorts rows that may not fit into the heap.
+ *
+ * Rows are buffered until the estimated size reaches the memory budget, then the buffer
+ * is sorted and spilled to a temporary CSV file (a "run"). When all rows were added,
+ * the runs are k-way merged. If everything fits into a single buffer nothing is spilled.
+ * At most {@link #MAX_MERGE_RUNS} runs are open at a time: with more runs, consecutive
+ * batches are first merged into longer runs until a single merge pass is left.
+ * The sort is stable: rows comparing equal keep their input order.
+ *
+ * With more than one thread, key extraction and sorting of a buffer are split across
+ * the threads (see {@link ParallelSort}) and a full buffer is sorted and spilled in the
+ * background while the next one is being filled. Each of the two buffers then gets half
+ * of the budget. The output does not depend on the number of threads.
+ */
+public class ExternalSorter implements RowSorter {
+
+    // Rough per-object costs on a 64-bit JVM with compressed oops
+    private static final long ROW_OVERHEAD = 16;
+    private static final long FIELD_OVERHEAD = 8 + 40;
+
+    // Each open run holds a file and a 64K read buffer
+    static final int MAX_MERGE_RUNS = 64;
+
+    // Smaller budgets spill a run every few rows
+    public static final long MIN_MEMORY_BUDGET = 64 * 1024;
+
+    private final SortKeys keys;
+    private final long bufferBudget;
+    private final File tempDir;
+    private final int threads;
+
+    private final ExecutorService sortPool;
+    private final ExecutorService spillExecutor;
+    private Future<?> pendingSpill;
+
+    private List<String[]> buffer = new ArrayList<>();
+    private final List<File> runs = new ArrayList<>();
+    private long bufferedBytes = 0;
+
+    public ExternalSorter(SortKeys keys, long memoryBudget, File tempDir) {
+        this(keys, memoryBudget, tempDir, 1);
+    }
+
+    public ExternalSorter(SortKeys keys, long memoryBudget, File tempDir, int threads) {
+        this.keys = keys;
+        this.tempDir = tempDir;
+        this.threads = threads;
+
+        if (threads > 1) {
+            this.bufferBudget = memoryBudget / 2;
+            this.sortPool = Executors.newFixedThreadPool(threads, daemonThreads("csvsort-worker"));
+            this.spillExecutor = Executors.newSingleThreadExecutor(daemonThreads("csvsort-spill"));
+        } else {
+            this.bufferBudget = memoryBudget;
+            this.sortPool = null;
+            this.spillExecutor = null;
+        }
+    }
+
+    @Override
+    public void add(String[] values) throws IOException {
+        buffer.add(values);
+        bufferedBytes += estimateSize(values);
+        if (bufferedBytes >= bufferBudget) {
+            spill();
+        }
+    }
+
+    @Override
+    public void writeSorted(RowConsumer consumer) throws IOException {
+        awaitPendingSpill();
+
+        if (runs.isEmpty()) {
+            SortRow[] rows = sortBuffer(buffer);
+            buffer = new ArrayList<>();
+            for (SortRow row : rows) {
+                consumer.accept(row.values);
+            }
+            return;
+        }
+
+        if (!buffer.isEmpty()) {
+            spill();
+            awaitPendingSpill();
+        }
+        while (runs.size() > MAX_MERGE_RUNS) {
+            mergePass();
+        }
+        merge(runs, consumer);
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() {
+        if (sortPool != null) {
+            spillExecutor.shutdownNow();
+            sortPool.shutdownNow();
+        }
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        File run = File.createTempFile("csvsort-run-", ".csv", tempDir);
+        runs.add(run);
+
+        List<String[]> full = buffer;
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+
+        if (spillExecutor == null) {
+            writeRun(run, sortBuffer(full));
+            return;
+        }
+
+        // Only one buffer may be in flight, otherwise memory use would exceed the budget
+        awaitPendingSpill();
+        pendingSpill = spillExecutor.submit(() -> {
+            writeRun(run, sortBuffer(full));
+            return null;
+        });
+    }
+
+    private void awaitPendingSpill() throws IOException {
+        if (pendingSpill != null) {
+            Future<?> spill = pendingSpill;
+            pendingSpill = null;
+            ParallelSort.await(spill);
+        }
+    }
+
+    private SortRow[] sortBuffer(List<String[]> values) throws IOException {
+        if (sortPool != null) {
+            return ParallelSort.extractAndSort(values, keys, sortPool, threads);
+        }
+
+        SortRow[] rows = new SortRow[values.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = keys.extract(values.get(i));
+        }
+        Arrays.sort(rows, keys);
+        return rows;
+    }
+
+    private static void writeRun(File run, SortRow[] rows) throws IOException {
+        try (CsvWriter writer = runWriter(run)) {
+            for (SortRow row : rows) {
+                writer.writeRecord(row.values);
+            }
+        }
+    }
+
+    private static CsvWriter runWriter(File run) throws IOException {
+        // An empty first field is quoted, so no record is written as an (ignored) empty line
+        return CsvOutput.csv(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), StandardCharsets.UTF_8), 1 << 16));
+    }
+
+    /**
+     * Merges consecutive batches of {@link #MAX_MERGE_RUNS} runs into one run each. The
+     * merged runs keep the order of their batches, so the sort stays stable.
+     */
+    private void mergePass() throws IOException {
+        List<File> inputs = new ArrayList<>(runs);
+        List<File> merged = new ArrayList<>();
+        for (int start = 0; start < inputs.size(); start += MAX_MERGE_RUNS) {
+            List<File> batch = inputs.subList(start, Math.min(start + MAX_MERGE_RUNS, inputs.size()));
+            if (batch.size() == 1) {
+                merged.add(batch.get(0));
+                continue;
+            }
+            File run = File.createTempFile("csvsort-run-", ".csv", tempDir);
+            // Listed before it is written, so close() deletes it if the merge fails
+            runs.add(run);
+            merged.add(run);
+            try (CsvWriter writer = runWriter(run)) {
+                merge(batch, writer::writeRecord);
+            }
+            runs.removeAll(batch);
+            for (File input : batch) {
+                input.delete();
+            }
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    private void merge(List<File> files, RowConsumer consumer) throws IOException {
+        List<RunCursor> cursors = new ArrayList<>();
+        try {
+            // Ties are broken by run index, runs were written in input order so the merge stays stable
+            PriorityQueue<RunCursor> queue = new PriorityQueue<>((c1, c2) -> {
+                int cmp = keys.compare(c1.current, c2.current);
+                return cmp != 0 ? cmp : Integer.compare(c1.runIndex, c2.runIndex);
+            });
+
+            for (int i = 0; i < files.size(); i++) {
+                RunCursor cursor = new RunCursor(files.get(i), i, keys);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                RunCursor cursor = queue.poll();
+                consumer.accept(cursor.current.values);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    private long estimateSize(String[] values) {
+        // Row object, values array and the two key arrays
+        long size = 3 * ROW_OVERHEAD + 9L * keys.size();
+        for (String value : values) {
+            size += FIELD_OVERHEAD + (value == null ? 0 : 2L * value.length());
+        }
+        return size;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class RunCursor implements Closeable {
+        private final int runIndex;
+        private final SortKeys keys;
+        private final CsvReader<CsvRecord> reader;
+        private final CloseableIterator<CsvRecord> iterator;
+        private SortRow current;
+
+        RunCursor(File run, int runIndex, SortKeys keys) throws IOException {
+            this.runIndex = runIndex;
+            this.keys = keys;
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(run), StandardCharsets.UTF_8), 1 << 16);
+            this.reader = CsvReader.builder().ignoreDifferentFieldCount(true).ofCsvRecord(reader);
+            this.iterator = this.reader.iterator();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                current = null;
+                return false;
+            }
+            CsvRecord record = iterator.next();
+            String[] values = new String[record.getFieldCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = record.getField(i);
+            }
+            current = keys.extract(values);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.sort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Stable multi-threaded key extraction and sort of a buffer of rows.
+ *
+ * The buffer is cut into one chunk per thread; each chunk gets its keys extracted and
+ * is sorted with the (stable) {@link Arrays#sort(Object[], int, int, java.util.Comparator)}.
+ * Neighbouring chunks are then merged pairwise in parallel, preferring the left chunk on
+ * ties, so the result is exactly the one a single-threaded stable sort produces.
+ */
+final class ParallelSort {
+
+    // Below this many rows per chunk the coordination costs more than it saves
+    private static final int MIN_CHUNK_SIZE = 8192;
+
+    private ParallelSort() {
+    }
+
+    static SortRow[] extractAndSort(List<String[]> values, SortKeys keys, ExecutorService pool, int threads) throws IOException {
+        int size = values.size();
+        SortRow[] rows = new SortRow[size];
+
+        int chunks = Math.max(1, Math.min(threads, size / MIN_CHUNK_SIZE));
+        if (chunks == 1) {
+            for (int i = 0; i < size; i++) {
+                rows[i] = keys.extract(values.get(i));
+            }
+            Arrays.sort(rows, keys);
+            return rows;
+        }
+
+        int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) size * i / chunks);
+        }
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            tasks.add(pool.submit(() -> {
+                for (int j = from; j < to; j++) {
+                    rows[j] = keys.extract(values.get(j));
+                }
+                Arrays.sort(rows, from, to, keys);
+            }));
+        }
+        await(tasks);
+
+        // Merge neighbouring sorted chunks until one is left
+        SortRow[] src = rows;
+        SortRow[] dst = new SortRow[size];
+        for (int width = 1; width < chunks; width *= 2) {
+            tasks.clear();
+            for (int i = 0; i < chunks; i += 2 * width) {
+                int lo = bounds[i];
+                int mid = bounds[Math.min(i + width, chunks)];
+                int hi = bounds[Math.min(i + 2 * width, chunks)];
+                SortRow[] from = src;
+                SortRow[] to = dst;
+                tasks.add(pool.submit(() -> merge(from, to, lo, mid, hi, keys)));
+            }
+            await(tasks);
+
+            SortRow[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        return src;
+    }
+
+    private static void merge(SortRow[] src, SortRow[] dst, int lo, int mid, int hi, SortKeys keys) {
+        int left = lo;
+        int right = mid;
+        int out = lo;
+        while (left < mid && right < hi) {
+            // Equal rows are taken from the left chunk first to keep the sort stable
+            if (keys.compare(src[left], src[right]) <= 0) {
+                dst[out++] = src[left++];
+            } else {
+                dst[out++] = src[right++];
+            }
+        }
+        System.arraycopy(src, left, dst, out, mid - left);
+        out += mid - left;
+        System.arraycopy(src, right, dst, out, hi - right);
+    }
+
+    static void await(List<? extends Future<?>> tasks) throws IOException {
+        for (Future<?> task : tasks) {
+            await(task);
+        }
+    }
+
+    static void await(Future<?> task) throws IOException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sorting", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
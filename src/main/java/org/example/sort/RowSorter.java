@@ -0,0 +1,28 @@
+package org.example.sort;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Collects rows and emits them in sort order.
+ */
+public interface RowSorter extends Closeable {
+
+    void add(String[] values) throws IOException;
+
+    /**
+     * Emits the collected rows in sorted order.
+     */
+    void writeSorted(RowConsumer consumer) throws IOException;
+
+    @Override
+    void close();
+
+    /**
+     * Receives sorted rows.
+     */
+    @FunctionalInterface
+    interface RowConsumer {
+        void accept(String[] row) throws IOException;
+    }
+}
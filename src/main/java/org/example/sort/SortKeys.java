@@ -0,0 +1,146 @@
+package org.example.sort;
+
+import java.util.Comparator;
+
+/**
+ * Extracts typed sort keys from rows and compares them.
+ *
+ * Two values of a column are compared numerically when both parse as a double,
+ * otherwise as strings - the same rules csvsort always used, but each value is
+ * parsed exactly once per row instead of on every comparison.
+ */
+public class SortKeys implements Comparator<SortRow> {
+
+    private final int[] columnIndexes;
+    private final boolean reverse;
+
+    public SortKeys(int[] columnIndexes, boolean reverse) {
+        this.columnIndexes = columnIndexes;
+        this.reverse = reverse;
+    }
+
+    public SortRow extract(String[] values) {
+        double[] numbers = new double[columnIndexes.length];
+        boolean[] numeric = new boolean[columnIndexes.length];
+
+        for (int i = 0; i < columnIndexes.length; i++) {
+            String value = values[columnIndexes[i]];
+            if (isNumberCandidate(value)) {
+                try {
+                    numbers[i] = Double.parseDouble(value);
+                    numeric[i] = true;
+                } catch (NumberFormatException e) {
+                    // Not a number, compared as string
+                }
+            }
+        }
+
+        return new SortRow(values, numbers, numeric);
+    }
+
+    @Override
+    public int compare(SortRow r1, SortRow r2) {
+        for (int i = 0; i < columnIndexes.length; i++) {
+            int cmp;
+            if (r1.numeric[i] && r2.numeric[i]) {
+                cmp = Double.compare(r1.numbers[i], r2.numbers[i]);
+            } else {
+                int index = columnIndexes[i];
+                cmp = r1.values[index].compareTo(r2.values[index]);
+            }
+            if (cmp != 0) {
+                return reverse ? -cmp : cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Number of sort columns, used for memory estimates.
+     */
+    public int size() {
+        return columnIndexes.length;
+    }
+
+    /**
+     * Cheap syntax check accepting everything {@link Double#parseDouble} accepts for decimal
+     * input, so that common text values (names, dates, codes) never reach the exception path.
+     * Hexadecimal literals are passed through and left to the parser.
+     */
+    static boolean isNumberCandidate(String s) {
+        int end = s.length();
+        int pos = 0;
+        // parseDouble trims whitespace and control characters
+        while (pos < end && s.charAt(pos) <= ' ') {
+            pos++;
+        }
+        while (end > pos && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (pos == end) {
+            return false;
+        }
+
+        char c = s.charAt(pos);
+        if (c == '+' || c == '-') {
+            pos++;
+            if (pos == end) {
+                return false;
+            }
+            c = s.charAt(pos);
+        }
+
+        if (c == 'N') {
+            return s.startsWith("NaN", pos) && pos + 3 == end;
+        }
+        if (c == 'I') {
+            return s.startsWith("Infinity", pos) && pos + 8 == end;
+        }
+        if (c == '0' && pos + 1 < end && (s.charAt(pos + 1) == 'x' || s.charAt(pos + 1) == 'X')) {
+            return true;
+        }
+
+        // Optional float/double suffix
+        char last = s.charAt(end - 1);
+        if (last == 'f' || last == 'F' || last == 'd' || last == 'D') {
+            end--;
+        }
+
+        int digits = 0;
+        while (pos < end && isDigit(s.charAt(pos))) {
+            pos++;
+            digits++;
+        }
+        if (pos < end && s.charAt(pos) == '.') {
+            pos++;
+            while (pos < end && isDigit(s.charAt(pos))) {
+                pos++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        if (pos < end && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < end && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) {
+                pos++;
+            }
+            int exponentDigits = 0;
+            while (pos < end && isDigit(s.charAt(pos))) {
+                pos++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+
+        return pos == end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.sort;
+
+/**
+ * A row together with its precomputed sort keys.
+ *
+ * For every sort column the value is parsed once into {@code numbers}; {@code numeric}
+ * tells whether the parse succeeded, otherwise the raw string from {@code values} is used.
+ */
+public final class SortRow {
+
+    final String[] values;
+    final double[] numbers;
+    final boolean[] numeric;
+
+    SortRow(String[] values, double[] numbers, boolean[] numeric) {
+        this.values = values;
+        this.numbers = numbers;
+        this.numeric = numeric;
+    }
+
+    public String[] getValues() {
+        return values;
+    }
+}
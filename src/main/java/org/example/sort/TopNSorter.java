@@ -0,0 +1,76 @@
+package org.example.sort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps only the first {@code limit} rows of the sorted order in a bounded heap.
+ *
+ * The heap's head is the worst row kept so far; a new row replaces it only when it sorts
+ * strictly before it. Rows comparing equal are ordered by arrival, so the result is the
+ * same as the first {@code limit} rows of a full stable sort. Memory is O(limit).
+ */
+public class TopNSorter implements RowSorter {
+
+    private final SortKeys keys;
+    private final int limit;
+    private final Comparator<Entry> order;
+    private final PriorityQueue<Entry> heap;
+    private long sequence = 0;
+
+    public TopNSorter(SortKeys keys, int limit) {
+        this.keys = keys;
+        this.limit = limit;
+        this.order = (e1, e2) -> {
+            int cmp = keys.compare(e1.row, e2.row);
+            return cmp != 0 ? cmp : Long.compare(e1.sequence, e2.sequence);
+        };
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(limit, 1 << 16)), order.reversed());
+    }
+
+    @Override
+    public void add(String[] values) {
+        if (limit == 0) {
+            return;
+        }
+
+        SortRow row = keys.extract(values);
+        long seq = sequence++;
+
+        if (heap.size() < limit) {
+            heap.add(new Entry(row, seq));
+        } else if (keys.compare(row, heap.peek().row) < 0) {
+            // A later row only wins when strictly smaller, ties keep the earlier one
+            heap.poll();
+            heap.add(new Entry(row, seq));
+        }
+    }
+
+    @Override
+    public void writeSorted(RowConsumer consumer) throws IOException {
+        List<Entry> entries = new ArrayList<>(heap);
+        heap.clear();
+        entries.sort(order);
+        for (Entry entry : entries) {
+            consumer.accept(entry.row.values);
+        }
+    }
+
+    @Override
+    public void close() {
+        heap.clear();
+    }
+
+    private static final class Entry {
+        private final SortRow row;
+        private final long sequence;
+
+        Entry(SortRow row, long sequence) {
+            this.row = row;
+            this.sequence = sequence;
+        }
+    }
+}
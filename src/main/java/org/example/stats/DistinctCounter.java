@@ -0,0 +1,80 @@
+package org.example.stats;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Counts distinct values exactly while there are at most {@code exactLimit} of them,
+ * then switches to a {@link HyperLogLog} estimate so memory stays bounded.
+ */
+public class DistinctCounter {
+
+    public static final int DEFAULT_EXACT_LIMIT = 100_000;
+
+    private final int exactLimit;
+    private Set<String> values = new LinkedHashSet<>();
+    private HyperLogLog sketch;
+
+    public DistinctCounter() {
+        this(DEFAULT_EXACT_LIMIT);
+    }
+
+    public DistinctCounter(int exactLimit) {
+        this.exactLimit = exactLimit;
+    }
+
+    public void add(String value) {
+        if (sketch != null) {
+            sketch.add(value);
+            return;
+        }
+
+        if (values.add(value) && values.size() > exactLimit) {
+            switchToSketch();
+        }
+    }
+
+    /**
+     * Adds the values counted by another instance, which is assumed to have seen the
+     * input following this one's. The result is the same as counting both inputs in one go.
+     */
+    public void merge(DistinctCounter other) {
+        if (other.sketch == null) {
+            for (String value : other.values) {
+                add(value);
+            }
+            return;
+        }
+
+        if (sketch == null) {
+            switchToSketch();
+        }
+        sketch.merge(other.sketch);
+    }
+
+    private void switchToSketch() {
+        sketch = new HyperLogLog();
+        for (String seen : values) {
+            sketch.add(seen);
+        }
+        values = null;
+    }
+
+    public boolean isExact() {
+        return sketch == null;
+    }
+
+    public long getCount() {
+        return sketch == null ? values.size() : sketch.estimate();
+    }
+
+    /**
+     * Distinct values in order of first appearance, only available while exact.
+     */
+    public Set<String> getValues() {
+        if (sketch != null) {
+            throw new IllegalStateException("Distinct values are no longer tracked exactly");
+        }
+        return values;
+    }
+}
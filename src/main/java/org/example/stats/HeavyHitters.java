@@ -0,0 +1,103 @@
+package org.example.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Most frequent values of a stream with a bounded number of counters (Misra-Gries summary,
+ * the deterministic counterpart of Space-Saving).
+ *
+ * Up to {@code 2 * capacity} counters are kept. When that is exceeded, the
+ * (capacity + 1)-th largest count is subtracted from every counter and counters that drop
+ * to zero are removed. Reported counts are therefore lower bounds that are at most
+ * {@link #getMaxError()} below the true count; every value occurring more than
+ * total / (capacity + 1) times is guaranteed to be retained. Summaries are mergeable.
+ */
+public class HeavyHitters {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final Map<String, long[]> counts = new HashMap<>();
+    private long maxError = 0;
+
+    public HeavyHitters() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HeavyHitters(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(String value) {
+        long[] counter = counts.get(value);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        counts.put(value, new long[]{1});
+        if (counts.size() > 2 * capacity) {
+            prune();
+        }
+    }
+
+    public void merge(HeavyHitters other) {
+        for (Map.Entry<String, long[]> entry : other.counts.entrySet()) {
+            long[] counter = counts.get(entry.getKey());
+            if (counter != null) {
+                counter[0] += entry.getValue()[0];
+            } else {
+                counts.put(entry.getKey(), new long[]{entry.getValue()[0]});
+            }
+        }
+        maxError += other.maxError;
+        if (counts.size() > 2 * capacity) {
+            prune();
+        }
+    }
+
+    /**
+     * True while no counter was ever decremented, i.e. all counts are exact.
+     */
+    public boolean isExact() {
+        return maxError == 0;
+    }
+
+    public long getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * The {@code n} values with the highest counts, ties ordered by value.
+     */
+    public List<Map.Entry<String, Long>> getTop(int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.size());
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            entries.add(Map.entry(entry.getKey(), entry.getValue()[0]));
+        }
+        entries.sort((e1, e2) -> {
+            int cmp = Long.compare(e2.getValue(), e1.getValue());
+            return cmp != 0 ? cmp : e1.getKey().compareTo(e2.getKey());
+        });
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    private void prune() {
+        long[] values = new long[counts.size()];
+        int i = 0;
+        for (long[] counter : counts.values()) {
+            values[i++] = counter[0];
+        }
+        Arrays.sort(values);
+        long decrement = values[values.length - 1 - capacity];
+
+        counts.values().removeIf(counter -> (counter[0] -= decrement) <= 0);
+        maxError += decrement;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.stats;
+
+import java.util.Arrays;
+
+/**
+ * KLL quantile sketch over doubles.
+ *
+ * Items live in levels (compactors) where an item on level h stands for 2^h input values.
+ * When a level exceeds its capacity it is sorted and every other item is promoted to the
+ * next level. Capacities shrink geometrically towards the lower levels, so the whole sketch
+ * holds O(k) items; the rank error shrinks roughly in proportion to 1/k. As long as nothing
+ * was compacted the answers are exact.
+ *
+ * Compaction alternates between keeping the even and the odd items instead of flipping a
+ * random coin, so the same input always yields the same result.
+ */
+public class KllSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private boolean[] oddOffsets = new boolean[1];
+    private long count = 0;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.levels[0] = new double[capacity(0)];
+    }
+
+    public void add(double value) {
+        append(0, value);
+        count++;
+        if (sizes[0] >= capacity(0)) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds all items of another sketch created with the same k.
+     */
+    public void merge(KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge sketches with different k: " + k + " and " + other.k);
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    public void reset() {
+        levels = new double[1][];
+        levels[0] = new double[capacity(0)];
+        sizes = new int[1];
+        oddOffsets = new boolean[1];
+        count = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isExact() {
+        return levels.length == 1;
+    }
+
+    /**
+     * Nearest-rank quantile: the smallest retained value whose cumulative weight reaches
+     * {@code fraction} of all values. Returns NaN for an empty sketch.
+     */
+    public double getQuantile(double fraction) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+
+        // Sort (value, weight) pairs by value; weights are encoded as the level number
+        double[] values = new double[retained];
+        int[] weightLevels = new int[retained];
+        Integer[] order = new Integer[retained];
+        int pos = 0;
+        long totalWeight = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[pos] = levels[h][i];
+                weightLevels[pos] = h;
+                order[pos] = pos;
+                pos++;
+                totalWeight += 1L << h;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long target = Math.max(1, (long) Math.ceil(fraction * totalWeight));
+        long cumulative = 0;
+        for (int index : order) {
+            cumulative += 1L << weightLevels[index];
+            if (cumulative >= target) {
+                return values[index];
+            }
+        }
+        return values[order[retained - 1]];
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            addLevel();
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        int newLength = levels.length + 1;
+        levels = Arrays.copyOf(levels, newLength);
+        levels[newLength - 1] = new double[MIN_CAPACITY];
+        sizes = Arrays.copyOf(sizes, newLength);
+        oddOffsets = Arrays.copyOf(oddOffsets, newLength);
+    }
+
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacity(h)) {
+                continue;
+            }
+
+            double[] items = levels[h];
+            int size = sizes[h];
+            Arrays.sort(items, 0, size);
+
+            // An odd item out stays on this level
+            int kept = size % 2;
+            int offset = oddOffsets[h] ? 1 : 0;
+            oddOffsets[h] = !oddOffsets[h];
+            for (int i = kept + offset; i < size; i += 2) {
+                append(h + 1, items[i]);
+            }
+            sizes[h] = kept;
+        }
+    }
+}
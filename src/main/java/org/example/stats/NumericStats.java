@@ -0,0 +1,104 @@
+package org.example.stats;
+
+/**
+ * Running count, min, max, mean and variance of a stream of doubles in constant memory.
+ *
+ * The sum is kept with Kahan compensation and the variance with Welford's algorithm,
+ * so no values need to be stored. Partial results of separate parts of the input can be
+ * combined with {@link #merge(NumericStats)}.
+ */
+public class NumericStats {
+
+    private long count = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum = 0;
+    private double compensation = 0;
+    private double mean = 0;
+    private double m2 = 0;
+
+    public void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        double y = value - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Adds the values summarized by another instance (Chan et al. parallel variance).
+     */
+    public void merge(NumericStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            min = other.min;
+            max = other.max;
+            sum = other.sum;
+            compensation = other.compensation;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+
+        long total = count + other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        double y = (other.sum - other.compensation) - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    public void reset() {
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sum = 0;
+        compensation = 0;
+        mean = 0;
+        m2 = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Sample variance, 0 for fewer than two values.
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.excel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+import org.example.io.RecordWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HssfCsvConverterTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Excel stores a formula filled down a column once, in a SHRFMLA record after its first
+     * cell; the cells themselves only point to that cell.
+     */
+    @Test
+    void expandsFilledDownFormulas() throws IOException {
+        File file = filledDown(dir.resolve("filled-down.xls").toFile());
+
+        List<List<String>> records = new ArrayList<>();
+        assertTrue(HssfCsvConverter.convert(file, null, null, collect(records)));
+
+        assertEquals(List.of(
+                List.of("1", "A1*2"),
+                List.of("2", "A2*2"),
+                List.of("3", "A3*2"),
+                List.of("4", "A4*2")), records);
+    }
+
+    /**
+     * Column A holds 1 to 4, column B {@code A1*2} in its first row and a shared formula
+     * {@code A2*2} filled down to B4.
+     */
+    private static File filledDown(File file) throws IOException {
+        ByteArrayOutputStream workbook = new ByteArrayOutputStream();
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            HSSFSheet sheet = wb.createSheet("Sheet1");
+            for (int r = 0; r < 4; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r + 1);
+                row.createCell(1).setCellFormula("A" + (r + 1) + "*2");
+            }
+            wb.write(workbook);
+        }
+
+        byte[] stream;
+        try (POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(workbook.toByteArray()));
+             InputStream in = fs.createDocumentInputStream("Workbook")) {
+            stream = in.readAllBytes();
+        }
+
+        // The FORMULA records after the first row point to B2, followed by SHRFMLA
+        ByteBuffer records = ByteBuffer.wrap(stream).order(ByteOrder.LITTLE_ENDIAN);
+        ByteArrayOutputStream shared = new ByteArrayOutputStream();
+        while (records.remaining() >= 4) {
+            int start = records.position();
+            int sid = records.getShort() & 0xFFFF;
+            int length = records.getShort() & 0xFFFF;
+            records.position(start + 4 + length);
+            int row = sid == FormulaRecord.sid ? records.getShort(start + 4) & 0xFFFF : 0;
+            if (row == 0) {
+                shared.write(stream, start, 4 + length);
+                continue;
+            }
+            // Row, column, XF, cached result and options, up to the formula
+            ByteBuffer formula = ByteBuffer.allocate(4 + 20 + 2 + 5).order(ByteOrder.LITTLE_ENDIAN);
+            formula.putShort((short) FormulaRecord.sid).putShort((short) (20 + 2 + 5));
+            formula.put(stream, start + 4, 20);
+            formula.putShort(4 + 14, (short) (formula.getShort(4 + 14) | 0x0008));
+            formula.putShort((short) 5).put((byte) 0x01).putShort((short) 1).putShort((short) 1);
+            shared.write(formula.array());
+            if (row == 1) {
+                shared.write(sharedFormula());
+            }
+        }
+
+        try (POIFSFileSystem fs = new POIFSFileSystem()) {
+            fs.createDocument(new ByteArrayInputStream(shared.toByteArray()), "Workbook");
+            try (OutputStream out = new FileOutputStream(file)) {
+                fs.writeFilesystem(out);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * SHRFMLA record for B2:B4 with the formula {@code A2*2}, relative to B2.
+     */
+    private static byte[] sharedFormula() {
+        byte[] tokens = {
+                0x2C, 0x00, 0x00, (byte) 0xFF, (byte) 0xC0, // tRefN: same row, one column left
+                0x1E, 0x02, 0x00,                           // tInt 2
+                0x05                                        // tMul
+        };
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writeShort(data, 0x04BC);
+        writeShort(data, 10 + tokens.length);
+        writeShort(data, 1);    // first row
+        writeShort(data, 3);    // last row
+        data.write(1);          // first column
+        data.write(1);          // last column
+        data.write(0);
+        data.write(3);          // cells using the formula
+        writeShort(data, tokens.length);
+        data.write(tokens, 0, tokens.length);
+        return data.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write(value >> 8 & 0xFF);
+    }
+
+    private static RecordWriter collect(List<List<String>> records) {
+        return new RecordWriter() {
+            private List<String> record = new ArrayList<>();
+
+            @Override
+            public void writeField(String value) {
+                record.add(value);
+            }
+
+            @Override
+            public void endRecord() {
+                records.add(record);
+                record = new ArrayList<>();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
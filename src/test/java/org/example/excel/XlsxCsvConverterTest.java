@@ -0,0 +1,128 @@
+package org.example.excel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.example.io.RecordWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class XlsxCsvConverterTest {
+
+    private static final String CONTENT_TYPES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+            + "</Types>";
+
+    private static final String RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+
+    private static final String WORKBOOK = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+            + "<sheets><sheet name=\"Data\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+            + "</workbook>";
+
+    private static final String WORKBOOK_RELATIONSHIPS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+            + "</Relationships>";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Excel stores a formula filled down or across once, in its first cell; the other cells
+     * only name it by its shared index.
+     */
+    @Test
+    void expandsSharedFormulas() throws IOException {
+        File file = workbook("<row r=\"1\">"
+                + "<c r=\"A1\"><v>1</v></c>"
+                + "<c r=\"B1\"><f t=\"shared\" ref=\"B1:C2\" si=\"0\">$A$1+A1+SUM(A$1:A1)+'Other Sheet'!B1</f><v>4</v></c>"
+                + "<c r=\"C1\"><f t=\"shared\" si=\"0\"/><v>9</v></c>"
+                + "</row>"
+                + "<row r=\"2\">"
+                + "<c r=\"A2\"><v>2</v></c>"
+                + "<c r=\"B2\"><f t=\"shared\" si=\"0\"/><v>6</v></c>"
+                + "<c r=\"C2\"><f t=\"shared\" si=\"0\"/><v>15</v></c>"
+                + "</row>");
+
+        assertEquals(List.of(
+                List.of("1", "$A$1+A1+SUM(A$1:A1)+'Other Sheet'!B1", "$A$1+B1+SUM(B$1:B1)+'Other Sheet'!C1"),
+                List.of("2", "$A$1+A2+SUM(A$1:A2)+'Other Sheet'!B2", "$A$1+B2+SUM(B$1:B2)+'Other Sheet'!C2")),
+                convert(file));
+    }
+
+    /**
+     * A defined name cannot be parsed without the workbook, so the cached results are written.
+     */
+    @Test
+    void writesCachedResultsOfUnparsableSharedFormulas() throws IOException {
+        File file = workbook("<row r=\"1\">"
+                + "<c r=\"A1\"><f t=\"shared\" ref=\"A1:A2\" si=\"0\">Rate*2</f><v>10</v></c>"
+                + "</row>"
+                + "<row r=\"2\">"
+                + "<c r=\"A2\"><f t=\"shared\" si=\"0\"/><v>20</v></c>"
+                + "</row>");
+
+        assertEquals(List.of(List.of("Rate*2"), List.of("20")), convert(file));
+    }
+
+    private File workbook(String sheetData) throws IOException {
+        File file = dir.resolve("shared.xlsx").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            add(zip, "[Content_Types].xml", CONTENT_TYPES);
+            add(zip, "_rels/.rels", RELATIONSHIPS);
+            add(zip, "xl/workbook.xml", WORKBOOK);
+            add(zip, "xl/_rels/workbook.xml.rels", WORKBOOK_RELATIONSHIPS);
+            add(zip, "xl/worksheets/sheet1.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                    + "<sheetData>" + sheetData + "</sheetData></worksheet>");
+        }
+        return file;
+    }
+
+    private static void add(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static List<List<String>> convert(File file) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        assertTrue(XlsxCsvConverter.convert(file, null, false, null, new RecordWriter() {
+            private List<String> record = new ArrayList<>();
+
+            @Override
+            public void writeField(String value) {
+                record.add(value);
+            }
+
+            @Override
+            public void endRecord() {
+                records.add(record);
+                record = new ArrayList<>();
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+        return records;
+    }
+}